@@ -2,6 +2,7 @@ package designer;
 
 import com.formdev.flatlaf.FlatDarkLaf;
 import designer.ui.DesignerFrame;
+import designer.util.ProjectIO;
 import designer.util.Static;
 
 import javax.swing.*;
@@ -18,6 +19,7 @@ public class SwingDesignerApp {
             applyDarkDefaults();
             Static.designerFrame = new DesignerFrame();
             Static.designerFrame.setVisible(true);
+            ProjectIO.recoverSession();
         });
     }
 
@@ -12,6 +12,7 @@ public class ComponentData {
     public String name;
     public String text;
     public boolean visible;
+    public Boolean enabled;          // null (older files) means enabled
     // geometry
     public RectangleData bounds;
     public SizeData     preferredSize;
@@ -28,6 +29,7 @@ public class ComponentData {
     public LayoutData        layout;
     public String            layoutConstraint;
     public String            positionType;
+    public GridBagData       gridBag;     // only when the parent uses a GridBagLayout
 
     // popup/context-menu
     public String            popupMenuName;
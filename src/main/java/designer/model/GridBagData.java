@@ -0,0 +1,32 @@
+package designer.model;
+
+import java.awt.*;
+
+public class GridBagData {
+    public GridBagData() {}
+    public GridBagData(GridBagConstraints gbc) {
+        this.gridx = gbc.gridx;
+        this.gridy = gbc.gridy;
+        this.gridwidth = gbc.gridwidth;
+        this.gridheight = gbc.gridheight;
+        this.weightx = gbc.weightx;
+        this.weighty = gbc.weighty;
+        this.anchor = gbc.anchor;
+        this.fill = gbc.fill;
+        this.ipadx = gbc.ipadx;
+        this.ipady = gbc.ipady;
+        this.insets = new int[]{ gbc.insets.top, gbc.insets.left, gbc.insets.bottom, gbc.insets.right };
+    }
+    public int gridx, gridy, gridwidth, gridheight;
+    public double weightx, weighty;
+    public int anchor, fill, ipadx, ipady;
+    public int[] insets;
+
+    public GridBagConstraints toConstraints() {
+        Insets in = insets != null && insets.length == 4
+                ? new Insets(insets[0], insets[1], insets[2], insets[3])
+                : new Insets(0, 0, 0, 0);
+        return new GridBagConstraints(gridx, gridy, gridwidth, gridheight,
+                weightx, weighty, anchor, fill, in, ipadx, ipady);
+    }
+}
@@ -1,9 +0,0 @@
-package designer.model;
-
-import java.util.List;
-
-public class ProjectData {
-    public String userCode = "";
-    public ComponentData  root;
-    public List<PopupMenuData> popupMenus;
-}
\ No newline at end of file
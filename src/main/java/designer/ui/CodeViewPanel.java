@@ -1,14 +1,18 @@
 package designer.ui;
 
 import designer.ui.componants.ExRSyntaxTextArea;
+import designer.util.LineDiff;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import javax.swing.text.Utilities;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
 import java.util.function.Predicate;
 
 public class CodeViewPanel extends JPanel {
@@ -68,81 +72,64 @@ public class CodeViewPanel extends JPanel {
     }
 
     /**
-     * Replace the editor text, attempting to preserve scroll position:
-     * 1) record the top 3 visible lines (by content)
-     * 2) record current scroll percentage
-     * 3) set new text
-     * 4) try to locate the previous top lines and scroll them back to the top
-     * 5) if not found, restore by percentage
-     * 6) if that fails, scroll to top
+     * Update the editor to {@code code} with the fewest document edits:
+     * 1) diff old and new text line by line ({@link LineDiff})
+     * 2) replay the hunks bottom-up as remove/insert calls inside one atomic (single-undo) edit,
+     *    so unchanged lines keep their tokens, folds and caret
+     * 3) keep the first visible line at the same place on screen, shifted by
+     *    the lines inserted or removed above it
      */
     public void setCode(String code) {
         if(code.equals(getCode())) return; // no change
         // run in EDT to safely query & update viewport
         SwingUtilities.invokeLater(() -> {
+            Document doc = area.getDocument();
+            List<String> oldLines = LineDiff.splitLines(area.getText());
+            List<String> newLines = LineDiff.splitLines(code);
+            List<LineDiff.Edit> edits = LineDiff.diff(oldLines, newLines);
+            if (edits.isEmpty()) return;
+
+            // 1) remember the first visible line and how far it is scrolled past
             JViewport viewport = scrollPane.getViewport();
             Point viewPos = viewport.getViewPosition();
+            int firstLine = 0, pixelsIntoLine = 0;
+            if (viewport.isShowing()) {   // otherwise not laid out yet: nothing to restore
+                try {
+                    firstLine = area.getLineOfOffset(area.viewToModel2D(new Point(0, viewPos.y)));
+                    Rectangle2D start = area.modelToView2D(area.getLineStartOffset(firstLine));
+                    if (start != null) pixelsIntoLine = viewPos.y - start.getBounds().y;
+                } catch (BadLocationException ignored) {
+                }
+            }
 
-            // 1) capture the first 3 visible lines
-            String[] topLines = new String[3];
+            // 2) apply the hunks from the bottom up so earlier offsets stay valid
+            int[] oldOffsets = LineDiff.lineOffsets(oldLines);
+            area.beginAtomicEdit();
             try {
-                int firstOffset = area.viewToModel2D(new Point(0, viewPos.y));
-                int firstLine = area.getLineOfOffset(firstOffset);
-                for (int i = 0; i < 3; i++) {
-                    int idx = firstLine + i;
-                    if (idx < area.getLineCount()) {
-                        int start = area.getLineStartOffset(idx);
-                        int end   = area.getLineEndOffset(idx);
-                        topLines[i] = area.getDocument().getText(start, end - start);
-                    } else {
-                        topLines[i] = null;
-                    }
+                for (int i = edits.size() - 1; i >= 0; i--) {
+                    LineDiff.Edit e = edits.get(i);
+                    int from = oldOffsets[e.oldStart()];
+                    int to   = oldOffsets[e.oldEnd()];
+                    if (to > from) doc.remove(from, to - from);
+                    String text = LineDiff.join(newLines, e.newStart(), e.newEnd());
+                    if (!text.isEmpty()) doc.insertString(from, text, null);
                 }
-            } catch (BadLocationException e) {
-                // fallback to empty
+            } catch (BadLocationException ex) {
+                OutputConsole.error("Error updating code view: " + ex);
+                area.setText(code);
+            } finally {
+                area.endAtomicEdit();
             }
 
-            // 2) capture scroll %
-            JScrollBar vert = scrollPane.getVerticalScrollBar();
-            int max = vert.getMaximum() - vert.getVisibleAmount();
-            float pct = max > 0 ? (float) vert.getValue() / max : 0f;
-
-            // 3) set the new text
-            area.setText(code);
-
-            // 4) restore scroll position
+            // 3) restore the scroll position by content rather than by pixels
+            int line = Math.min(LineDiff.mapLine(edits, firstLine), Math.max(0, area.getLineCount() - 1));
+            int offsetInLine = pixelsIntoLine;
             SwingUtilities.invokeLater(() -> {
-                boolean restored = false;
+                if (!viewport.isShowing()) return;   // not laid out yet: leave the viewport alone
                 try {
-                    // search for matching top-lines block
-                    outer:
-                    for (int line = 0; line < area.getLineCount(); line++) {
-                        for (int j = 0; j < 3; j++) {
-                            String txt = topLines[j];
-                            if (txt == null) continue;
-                            int idx = line + j;
-                            if (idx >= area.getLineCount()) continue outer;
-                            int s = area.getLineStartOffset(idx);
-                            int e = area.getLineEndOffset(idx);
-                            String cur = area.getDocument().getText(s, e - s);
-                            if (!cur.equals(txt)) continue outer;
-                        }
-                        // match found; scroll to this line
-                        int offs = area.getLineStartOffset(line);
-                        Rectangle r = area.modelToView2D(offs).getBounds();
-                        viewport.setViewPosition(new Point(0, r.y));
-                        restored = true;
-                        break;
-                    }
-                } catch (BadLocationException ignored) {}
-
-                if (!restored) {
-                    // 5) restore by percentage or 6) top
-                    if (max > 0) {
-                        vert.setValue(Math.round(pct * max));
-                    } else {
-                        vert.setValue(0);
-                    }
+                    Rectangle2D r = area.modelToView2D(area.getLineStartOffset(line));
+                    if (r != null) viewport.setViewPosition(new Point(viewPos.x, Math.max(0, r.getBounds().y + offsetInLine)));
+                } catch (BadLocationException ignored) {
                 }
             });
         });
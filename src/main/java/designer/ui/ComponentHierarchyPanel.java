@@ -3,11 +3,16 @@ package designer.ui;
 import designer.ui.componants.ComponentTreeCellRenderer;
 
 import javax.swing.*;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.*;
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ComponentHierarchyPanel extends JPanel
         implements DesignSurfacePanel.DesignChangeListener,
@@ -18,17 +23,46 @@ public class ComponentHierarchyPanel extends JPanel
     private final DefaultTreeModel model;
     private boolean updatingFromSurface = false;
     private final ComponentTreeCellRenderer renderer;
+    /** Tree node of every component shown, so updates and lookups never search the tree. */
+    private final Map<Component, ComponentNode> nodes = new IdentityHashMap<>();
+
+    /**
+     * Children are created when the node is first expanded, or when a selection path needs
+     * them, so a subtree that was never opened costs this one node.
+     */
+    private static final class ComponentNode extends DefaultMutableTreeNode {
+        boolean loaded;
+
+        ComponentNode(Component c) {
+            super(c);
+        }
+
+        @Override public boolean isLeaf() {
+            if (loaded) return super.isLeaf();
+            for (Component c : ((Container) getUserObject()).getComponents()) {
+                if (c instanceof JComponent) return false;
+            }
+            return true;
+        }
+    }
 
     public ComponentHierarchyPanel(DesignSurfacePanel surface) {
         super(new BorderLayout());
         this.surface = surface;
 
         // build model & tree
-        DefaultMutableTreeNode root = new DefaultMutableTreeNode(surface);
+        ComponentNode root = new ComponentNode(surface);
         model = new DefaultTreeModel(root);
         tree  = new JTree(model);
         tree.setRootVisible(true);
 
+        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override public void treeWillExpand(TreeExpansionEvent e) {
+                load((ComponentNode) e.getPath().getLastPathComponent());
+            }
+            @Override public void treeWillCollapse(TreeExpansionEvent e) { }
+        });
+
         renderer = new ComponentTreeCellRenderer();
         tree.setCellRenderer(renderer);
 
@@ -64,7 +98,7 @@ public class ComponentHierarchyPanel extends JPanel
             if (!(c instanceof JComponent)) {
                 tree.clearSelection();
             } else {
-                TreePath p = findPath((JComponent)c);
+                TreePath p = findPath(c);
                 if (p != null) {
                     tree.setSelectionPath(p);
                     tree.scrollPathToVisible(p);
@@ -73,11 +107,12 @@ public class ComponentHierarchyPanel extends JPanel
             updatingFromSurface = false;
         }));
 
-        surface.addDesignChangeListener(this);
+        surface.addDesignEventListener(this::applyEvents);
         add(new JScrollPane(tree), BorderLayout.CENTER);
         rebuildTree();
     }
 
+    /** Full rebuild, for a freshly imported design; everything else arrives as events. */
     private void rebuildTree() {
         // 1) remember all the userObjects whose paths are currently expanded
         List<Object> expanded = new ArrayList<>();
@@ -89,13 +124,14 @@ public class ComponentHierarchyPanel extends JPanel
             }
         }
 
-        // 2) rebuild the model from scratch
-        DefaultMutableTreeNode root = new DefaultMutableTreeNode(surface);
-        buildNode(root, surface);
+        // 2) rebuild the model from scratch, one level deep
+        nodes.clear();
+        ComponentNode root = new ComponentNode(surface);
+        nodes.put(surface, root);
         model.setRoot(root);
-        model.reload();
+        load(root);
 
-        // 3) re-expand each of the previously expanded userObjects
+        // 3) re-expand each of the previously expanded userObjects; this loads just their paths
         for (Object uo : expanded) {
             TreePath p = findPath(uo);
             if (p != null) {
@@ -104,46 +140,136 @@ public class ComponentHierarchyPanel extends JPanel
         }
     }
 
-    private void buildNode(DefaultMutableTreeNode parent, Container cont) {
-        for (Component c : cont.getComponents()) {
+    /** Creates the node's children, one level only; theirs wait until they are needed in turn. */
+    private void load(ComponentNode node) {
+        if (node.loaded) return;
+        node.loaded = true;
+        for (Component c : ((Container) node.getUserObject()).getComponents()) {
             if (c instanceof JComponent jc) {
-                DefaultMutableTreeNode child = new DefaultMutableTreeNode(jc);
-                parent.add(child);
-                if (jc.getComponentCount() > 0) {
-                    buildNode(child, jc);
-                }
+                node.add(createNode(jc));
             }
         }
+        if (node.getChildCount() == 0) return;
+        int[] indices = new int[node.getChildCount()];
+        for (int i = 0; i < indices.length; i++) indices[i] = i;
+        model.nodesWereInserted(node, indices);
     }
 
-    @Override public void designChanged() {
-        SwingUtilities.invokeLater(this::rebuildTree);
+    private ComponentNode createNode(JComponent jc) {
+        ComponentNode node = new ComponentNode(jc);
+        nodes.put(jc, node);
+        return node;
     }
 
-    @Override public void selectionChanged(Component c) {
+    /** The component's node, loading the ancestors on the way down if they were never expanded. */
+    private ComponentNode nodeFor(Component c) {
+        ComponentNode node = nodes.get(c);
+        if (node != null || c == null || !(c instanceof JComponent)) return node;
+        ComponentNode parent = nodeFor(c.getParent());
+        if (parent == null) return null;
+        load(parent);
+        return nodes.get(c);
     }
 
-    private TreePath findPath(JComponent target) {
-        DefaultMutableTreeNode root = (DefaultMutableTreeNode)model.getRoot();
-        Enumeration<TreeNode> e = root.breadthFirstEnumeration();
-        while (e.hasMoreElements()) {
-            DefaultMutableTreeNode node = (DefaultMutableTreeNode)e.nextElement();
-            if (node.getUserObject() == target) {
-                return new TreePath(node.getPath());
+    /**
+     * Applies one batch from the surface: only the containers whose children changed are
+     * synced, and renamed components are repainted. Bounds changes need nothing, so
+     * dragging a component costs no tree work at all.
+     */
+    private void applyEvents(List<DesignEvent> batch) {
+        Set<Container> touched = new LinkedHashSet<>();
+        for (DesignEvent e : batch) {
+            if (e instanceof DesignEvent.ComponentAdded a) {
+                touched.add(a.parent());
+            } else if (e instanceof DesignEvent.ComponentRemoved r) {
+                touched.add(r.parent());
+            } else if (e instanceof DesignEvent.Reparented m) {
+                touched.add(m.oldParent());
+                touched.add(m.newParent());
+            } else if (e instanceof DesignEvent.ZOrderChanged z) {
+                touched.add(z.parent());
+            } else if (e instanceof DesignEvent.PropertyChanged p) {
+                DefaultMutableTreeNode node = nodes.get(p.component());
+                if (node != null) model.nodeChanged(node);
             }
         }
-        return null;
+        if (touched.isEmpty()) return;
+
+        List<ComponentNode> detached = new ArrayList<>();
+        for (Container cont : touched) {
+            syncChildren(cont, detached);
+        }
+        // moved nodes were re-inserted elsewhere and keep their subtree; the rest are gone
+        for (ComponentNode node : detached) {
+            if (node.getParent() == null) unmap(node);
+        }
     }
 
-    private TreePath findPath(Object userObject) {
-        DefaultMutableTreeNode root = (DefaultMutableTreeNode)model.getRoot();
-        Enumeration<TreeNode> e = root.breadthFirstEnumeration();
-        while (e.hasMoreElements()) {
-            DefaultMutableTreeNode node = (DefaultMutableTreeNode)e.nextElement();
-            if (node.getUserObject() == userObject) {
-                return new TreePath(node.getPath());
+    /** Brings the children of {@code cont}'s node in line with the container, touching only what differs. */
+    private void syncChildren(Container cont, List<ComponentNode> detached) {
+        ComponentNode parent = nodes.get(cont);
+        if (parent == null) return;
+        if (!parent.loaded) {
+            // nothing below it to update, but it may have gained or lost its expand handle
+            model.nodeChanged(parent);
+            return;
+        }
+
+        for (int i = parent.getChildCount() - 1; i >= 0; i--) {
+            ComponentNode child = (ComponentNode) parent.getChildAt(i);
+            if (((Component) child.getUserObject()).getParent() != cont) {
+                parent.remove(i);
+                model.nodesWereRemoved(parent, new int[]{ i }, new Object[]{ child });
+                detached.add(child);
             }
         }
-        return null;
+
+        int i = 0;
+        for (Component c : cont.getComponents()) {
+            if (!(c instanceof JComponent jc)) continue;
+            if (i < parent.getChildCount()
+                    && ((DefaultMutableTreeNode) parent.getChildAt(i)).getUserObject() == jc) {
+                i++;
+                continue;
+            }
+            ComponentNode node = nodes.get(jc);
+            if (node == null) {
+                node = createNode(jc);
+            } else {
+                detach(node);
+            }
+            parent.insert(node, i);
+            model.nodesWereInserted(parent, new int[]{ i });
+            i++;
+        }
+    }
+
+    private void detach(DefaultMutableTreeNode node) {
+        DefaultMutableTreeNode parent = (DefaultMutableTreeNode) node.getParent();
+        if (parent == null) return;
+        int index = parent.getIndex(node);
+        parent.remove(index);
+        model.nodesWereRemoved(parent, new int[]{ index }, new Object[]{ node });
+    }
+
+    private void unmap(DefaultMutableTreeNode node) {
+        Object uo = node.getUserObject();
+        if (nodes.get(uo) == node) nodes.remove(uo);
+        for (int i = 0; i < node.getChildCount(); i++) {
+            unmap((DefaultMutableTreeNode) node.getChildAt(i));
+        }
+    }
+
+    @Override public void designChanged() {
+        SwingUtilities.invokeLater(this::rebuildTree);
+    }
+
+    @Override public void selectionChanged(Component c) {
+    }
+
+    /** O(depth): the node comes from the map, the path from its ancestors. */
+    private TreePath findPath(Object userObject) {
+        ComponentNode node = userObject instanceof Component c ? nodeFor(c) : null;
+        return node == null ? null : new TreePath(node.getPath());
     }
 }
@@ -0,0 +1,89 @@
+package designer.ui;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One change to the design, as delivered to {@link DesignSurfacePanel.DesignEventListener}s.
+ * The surface collects the events of one EDT cycle and hands them over as a single,
+ * coalesced batch, so listeners can update only what was touched.
+ * Indices are z-order indices in the parent; -1 when the surface could not know it.
+ */
+public sealed interface DesignEvent
+{
+    Component component();
+
+    record ComponentAdded(Component component, Container parent, int index) implements DesignEvent {}
+
+    /** {@code index} is where the component was before it was removed. */
+    record ComponentRemoved(Component component, Container parent, int index) implements DesignEvent {}
+
+    /** Bounds in parent coordinates, set by the designer (drag, resize, align). */
+    record BoundsChanged(Component component, Rectangle oldBounds, Rectangle newBounds) implements DesignEvent {}
+
+    /** A bean property or one of the designer's client properties, such as "layoutConstraint". */
+    record PropertyChanged(Component component, String name, Object oldValue, Object newValue) implements DesignEvent {}
+
+    record Reparented(Component component, Container oldParent, int oldIndex,
+                      Container newParent, int newIndex) implements DesignEvent {}
+
+    record ZOrderChanged(Component component, Container parent, int oldIndex, int newIndex) implements DesignEvent {}
+
+    /**
+     * Merges the events of one batch: repeated bounds, property and z-order changes of the
+     * same component keep the first old and the last new value, a removal followed by an
+     * add of the same component becomes a move, and changes that end where they started
+     * are dropped. The order of first occurrence is kept.
+     */
+    static List<DesignEvent> coalesce(List<DesignEvent> events) {
+        List<DesignEvent> out = new ArrayList<>(events.size());
+        Map<List<Object>, Integer> slots = new HashMap<>();
+
+        for (DesignEvent e : events) {
+            if (e instanceof BoundsChanged b) {
+                Integer i = slots.putIfAbsent(List.of(b.component(), BoundsChanged.class), out.size());
+                if (i == null) out.add(b);
+                else out.set(i, new BoundsChanged(b.component(), ((BoundsChanged) out.get(i)).oldBounds(), b.newBounds()));
+            } else if (e instanceof PropertyChanged p) {
+                Integer i = slots.putIfAbsent(List.of(p.component(), PropertyChanged.class, p.name()), out.size());
+                if (i == null) out.add(p);
+                else out.set(i, new PropertyChanged(p.component(), p.name(), ((PropertyChanged) out.get(i)).oldValue(), p.newValue()));
+            } else if (e instanceof ZOrderChanged z) {
+                mergeZOrder(out, slots, z);
+            } else if (e instanceof ComponentRemoved r) {
+                slots.put(List.of(r.component(), ComponentRemoved.class), out.size());
+                out.add(r);
+            } else if (e instanceof ComponentAdded a) {
+                Integer i = slots.remove(List.of(a.component(), ComponentRemoved.class));
+                if (i == null) {
+                    out.add(a);
+                    continue;
+                }
+                ComponentRemoved r = (ComponentRemoved) out.set(i, null);
+                if (r.parent() == a.parent()) {
+                    mergeZOrder(out, slots, new ZOrderChanged(a.component(), a.parent(), r.index(), a.index()));
+                } else {
+                    out.add(new Reparented(a.component(), r.parent(), r.index(), a.parent(), a.index()));
+                }
+            } else {
+                out.add(e);
+            }
+        }
+
+        out.removeIf(e -> e == null
+                || e instanceof BoundsChanged b && Objects.equals(b.oldBounds(), b.newBounds())
+                || e instanceof PropertyChanged p && Objects.equals(p.oldValue(), p.newValue())
+                || e instanceof ZOrderChanged z && z.oldIndex() == z.newIndex() && z.oldIndex() >= 0);
+        return out;
+    }
+
+    private static void mergeZOrder(List<DesignEvent> out, Map<List<Object>, Integer> slots, ZOrderChanged z) {
+        Integer i = slots.putIfAbsent(List.of(z.component(), ZOrderChanged.class, z.parent()), out.size());
+        if (i == null) out.add(z);
+        else out.set(i, new ZOrderChanged(z.component(), z.parent(), ((ZOrderChanged) out.get(i)).oldIndex(), z.newIndex()));
+    }
+}
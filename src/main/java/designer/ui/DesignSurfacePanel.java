@@ -1,6 +1,8 @@
 package designer.ui;
 
-import designer.util.ModelBuilder;
+import designer.util.CodeManager;
+import designer.util.ProjectCodec;
+import designer.util.QuadTree;
 import designer.SwingDesignerApp;
 import designer.model.*;
 import designer.types.PositionType;
@@ -8,17 +10,19 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.dnd.*;
-import java.awt.event.MouseAdapter;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ContainerEvent;
 import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
 import java.awt.geom.Area;
+import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class DesignSurfacePanel extends JPanel implements DropTargetListener {
     private JComponent selectedComp = null;
-    private final List<DesignChangeListener> changeL = new ArrayList<>();
+    private final List<DesignEventListener>  eventL  = new ArrayList<>();
     private final List<SelectionListener>    selectL = new ArrayList<>();
     private final AtomicInteger idSeq   = new AtomicInteger();
     private boolean snapToGrid = false;
@@ -26,29 +30,62 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
     private int     gridSize   = 10;
     private Color   gridColor  = new Color(200, 200, 200, 64);
 
+    /* live drag: only dirty rectangles repaint while moving, one design change on release */
+    private static final int DRAG_PREVIEW_FPS = 15;
+    static final int OUTLINE_MARGIN           = 3;   // selection stroke is drawn just outside the bounds
+    private final List<DesignChangeListener> dragPreviewL = new ArrayList<>();
+    private boolean liveDragPreview = false;
+    private final javax.swing.Timer dragPreviewTimer = new javax.swing.Timer(1000 / DRAG_PREVIEW_FPS,
+            e -> dragPreviewL.forEach(DesignChangeListener::designChanged));
+
+    /* bounds of every descendant in surface coordinates, kept current from AWT component/container events */
+    private final QuadTree<Component> index = new QuadTree<>();
+    private final AWTEventListener indexUpdater = this::updateIndex;
+    private boolean indexLive = false;
+
+    /* selection, handle and hover are drawn by the overlay in a JLayer around the surface */
+    private final SelectionOverlay overlay = new SelectionOverlay();
+    private JLayer<DesignSurfacePanel> layer;
+    private Container gridHost;
+
+    /* typed change events of the current EDT cycle, delivered as one coalesced batch */
+    private final List<DesignEvent> pendingEvents = new ArrayList<>();
+    private boolean flushScheduled = false;
+    private final AWTEventListener structureWatcher = this::postStructureEvent;
+    private Component removingChild;
+    private int removingIndex = -1;
+    /** Between {@link #beginImport()} and {@link #endImport()}. */
+    private boolean importing = false;
+
+    /* containers whose layout manager or child constraints changed since the last re-layout */
+    private final Set<Container> layoutDirty = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /* snap grid: one tile per size/colour, and the grid clip of each host until the index changes */
+    private BufferedImage gridTile;
+    private final Map<Container, GridClip> gridClips = new WeakHashMap<>();
+    private record GridClip(int indexVersion, Rectangle region, Shape clip) {}
+
     public DesignSurfacePanel() {
         super(null);
         setName("panel");
         setBackground(new Color(SwingDesignerApp.BG_DARK.getRGB()));
         setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
-        new DropTarget(this, DnDConstants.ACTION_COPY, this, true);
-
-        addMouseListener(new MouseAdapter() {
-            @Override public void mousePressed(MouseEvent e) {
-                Component hit = SwingUtilities.getDeepestComponentAt(
-                        DesignSurfacePanel.this,
-                        e.getX(), e.getY()
-                );
-                // allow the panel itself to be selected too
-                if( hit instanceof JComponent ) {
-                    selectedComp = (JComponent)hit;
-                } else {
-                    selectedComp = null;
-                }
-                notifySelection(selectedComp);
-                repaint();
-            }
-        });
+        if (!GraphicsEnvironment.isHeadless()) {   // no drag and drop without a display, e.g. in tests
+            new DropTarget(this, DnDConstants.ACTION_COPY, this, true);
+        }
+        dragPreviewTimer.setRepeats(false);
+
+        // mouse handling lives in one dispatcher fed by the overlay layer; events on children
+        // without listeners of their own must still reach the surface so the layer sees them
+        enableEvents(AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK);
+    }
+
+    /** The surface wrapped in its overlay layer; add this to the UI instead of the surface itself. */
+    public JLayer<DesignSurfacePanel> getLayer() {
+        if (layer == null) {
+            layer = new JLayer<>(this, overlay);
+        }
+        return layer;
     }
 
     public void setLockComponents(boolean lock)
@@ -59,16 +96,25 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
     /** Called by DesignerFrame when the user toggles Snap to Grid */
     public void setSnapToGrid(boolean s) {
         this.snapToGrid = s;
+        repaint();
     }
     public void setGridSize(int sz) {
         this.gridSize = sz;
+        this.gridTile = null;
     }
     public void setGridColor(Color c) {
         this.gridColor = c;
+        this.gridTile = null;
     }
 
     public Color getGridColor() { return gridColor; }
 
+    /** Called by DesignerFrame when the user toggles the code preview while dragging */
+    public void setLiveDragPreview(boolean live) {
+        this.liveDragPreview = live;
+        if (!live) dragPreviewTimer.stop();
+    }
+
     public int getGridSize() {
         return gridSize;
     }
@@ -77,7 +123,8 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
     public void removeSelected() {
         if (selectedComp != null) {
             Container parent = selectedComp.getParent();
-            parent.remove(selectedComp);
+            removeChild(selectedComp);
+            CodeManager.markDirty(parent);
             selectedComp = null;
             notifySelection(null);
             notifyChange();
@@ -87,7 +134,6 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
     public void setSelectedComponent(JComponent c) {
         this.selectedComp = c;
         notifySelection(c);
-        repaint();
     }
     public void clearSelection() {
         setSelectedComponent(null);
@@ -101,59 +147,68 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
             Container host = selectedComp.getParent();
             if (host != null && host.getLayout() == null) {
                 Point origin = SwingUtilities.convertPoint(host, 0, 0, this);
-                int w = host.getWidth(), h = host.getHeight();
-
-                List<Rectangle> children = new ArrayList<>();
-                for (Component c : host.getComponents()) {
-                    if (c instanceof JComponent jc) {
-                        Rectangle r = SwingUtilities.convertRectangle(
-                                jc.getParent(), jc.getBounds(), this
-                        );
-                        children.add(r);
+                // one pixel wider and taller so the closing grid line is included
+                Rectangle region = new Rectangle(origin.x, origin.y, host.getWidth() + 1, host.getHeight() + 1);
+                Rectangle dirty = g.getClipBounds();
+                if (dirty != null) region = region.intersection(dirty);
+
+                if (!region.isEmpty()) {
+                    Graphics2D g2 = (Graphics2D) g.create();
+                    try {
+                        // host bounds MINUS its children, then one fill with the cached grid tile
+                        g2.clip(gridClip(host, region));
+                        g2.setPaint(new TexturePaint(gridTile(),
+                                new Rectangle(origin.x, origin.y, gridSize, gridSize)));
+                        g2.fill(region);
+                    } finally {
+                        g2.dispose();
                     }
                 }
+            }
+        }
+    }
 
-                Graphics2D g2 = (Graphics2D) g.create();
-                try {
-                    // build a clip region: host bounds MINUS the selRect
-                    Area clip = new Area(new Rectangle(origin.x, origin.y, w, h));
-                    for(Rectangle r : children) {
-                        if (r.intersects(origin.x, origin.y, w, h)) {
-                            clip.subtract(new Area(r));
-                        }
-                    }
-                    g2.setClip(clip);
-
-                    g2.setColor(gridColor);
-                    for (int x = origin.x; x <= origin.x + w; x += gridSize)
-                        g2.drawLine(x, origin.y, x, origin.y + h);
-                    for (int y = origin.y; y <= origin.y + h; y += gridSize)
-                        g2.drawLine(origin.x, y, origin.x + w, y);
-                } finally {
-                    g2.dispose();
-                }
+    /** A gridSize × gridSize tile with the grid line along its top and left edge. */
+    private BufferedImage gridTile() {
+        if (gridTile == null) {
+            BufferedImage tile = new BufferedImage(gridSize, gridSize, BufferedImage.TYPE_INT_ARGB);
+            int argb = gridColor.getRGB();
+            for (int i = 0; i < gridSize; i++) {
+                tile.setRGB(i, 0, argb);
+                tile.setRGB(0, i, argb);
             }
+            gridTile = tile;
         }
+        return gridTile;
+    }
 
-        // ...then draw your orange selection rect as before
-        if (selectedComp != null) {
-            Graphics2D g2 = (Graphics2D) g.create();
-            try {
-                g2.setColor(Color.ORANGE);
-                float[] dash = {4f,4f};
-                g2.setStroke(new BasicStroke(
-                        2f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1f, dash, 0f
-                ));
-                Rectangle r = SwingUtilities.convertRectangle(
-                        selectedComp.getParent(),
-                        selectedComp.getBounds(),
-                        this
-                );
-                g2.drawRect(r.x, r.y, r.width-1, r.height-1);
-            } finally {
-                g2.dispose();
+    /**
+     * {@code region} minus the host's children, which are looked up in the spatial index.
+     * Cached per host while the index and the region stay the same, so repeated repaints
+     * (selection changes, hover) reuse the Area instead of subtracting every child again.
+     */
+    private Shape gridClip(Container host, Rectangle region) {
+        GridClip cached = gridClips.get(host);
+        if (indexLive && cached != null && cached.indexVersion() == index.version() && cached.region().equals(region)) {
+            return cached.clip();
+        }
+        Area clip = new Area(region);
+        if (indexLive) {
+            for (Component c : index.query(region)) {
+                if (c.getParent() == host && c instanceof JComponent) {
+                    clip.subtract(new Area(index.boundsOf(c)));
+                }
+            }
+            gridClips.put(host, new GridClip(index.version(), region, clip));
+        } else {
+            for (Component c : host.getComponents()) {
+                if (c instanceof JComponent jc) {
+                    Rectangle r = SwingUtilities.convertRectangle(host, jc.getBounds(), this);
+                    if (r.intersects(region)) clip.subtract(new Area(r));
+                }
             }
         }
+        return clip;
     }
 
     /* DropTargetListener */
@@ -178,9 +233,8 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
             /* compute initial position */
             Point inParent = convertPointTo(parent, dropPt);
 
-            /* id + behaviour */
+            /* id */
             comp.setName(clazz.getSimpleName().toLowerCase() + idSeq.incrementAndGet());
-            installDragResizeBehavior(comp);
 
             /* add with or without constraint */
             LayoutManager lm = parent.getLayout();
@@ -194,6 +248,7 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
             }
 
             comp.putClientProperty("positionType", PositionType.ABSOLUTE);
+            CodeManager.markDirty(parent);
 
             this.selectedComp = comp;
             notifySelection(comp);
@@ -209,65 +264,73 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
      * Call this whenever any property or constraint changes.
      * We now:
      *  1) re-name to keep names unique,
-     *  2) re-apply client-property constraints for every BorderLayout,
-     *  3) re-install move/resize & click listeners on every child,
-     *  4) fire our designChanged listeners.
+     *  2) re-lay out only the containers whose layout or child constraints changed,
+     *  3) fire our designChanged listeners.
      */
     public void externalPropertyChanged() {
+        // property edits always target the current selection: its own layout, or its constraint in the parent
+        CodeManager.markDirty(selectedComp);
+        if (selectedComp != null) {
+            markLayoutDirty(selectedComp);
+            markLayoutDirty(selectedComp.getParent());
+        }
         ensureUniqueNames();
-        reapplyConstraints(this);
-        // re-attach our MoveResizeAdapter to every JComponent in the tree
-        installBehaviorsRecursively(this);
+        relayoutDirty();
         notifyChange();
         //notifySelection(selectedComp);
     }
 
-    /** Walk the component subtree and install our move/resize + click behavior. */
-    private void installBehaviorsRecursively(Container parent) {
-        for (Component c : parent.getComponents()) {
-            if (c instanceof JComponent jc) {
-                installDragResizeBehavior(jc);
-                // since JComponent is also a Container, just recurse on it
-                if (jc.getComponentCount() > 0) {
-                    installBehaviorsRecursively(jc);
-                }
-            }
-        }
+    /** Same, for an edit whose old and new value are known; publishes a {@link DesignEvent.PropertyChanged}. */
+    public void externalPropertyChanged(Component target, String name, Object oldValue, Object newValue) {
+        post(new DesignEvent.PropertyChanged(target, name, oldValue, newValue));
+        CodeManager.markDirty(target);
+        if (target instanceof Container cont) markLayoutDirty(cont);
+        if (target != null) markLayoutDirty(target.getParent());
+        externalPropertyChanged();
+    }
+
+    /** Record that {@code c}'s layout manager, or the constraints of its children, changed. */
+    public void markLayoutDirty(Container c) {
+        if (c != null) layoutDirty.add(c);
     }
 
     /**
-     * Recursively walks the component tree, and for any Container
-     * whose layout is a BorderLayout, tears out all of its children
-     * and re-adds them using the String in each child's
-     * "layoutConstraint" client-property.
+     * Re-applies the "layoutConstraint" client properties of every dirty BorderLayout
+     * container, then lays out all dirty containers with one validate at the end.
      */
-    private void reapplyConstraints(Container cont) {
-        if (cont.getLayout() instanceof BorderLayout) {
-            Component[] oldKids = cont.getComponents();
-            List<Component> copy   = new ArrayList<>(List.of(oldKids));
-            cont.removeAll();
-            for (Component c : copy) {
-                if (c instanceof JComponent jc) {
-                    String key = (String)jc.getClientProperty("layoutConstraint");
-                    if (key == null) key = BorderLayout.CENTER;
-                    cont.add(c, key);
-                } else {
-                    cont.add(c);
-                }
+    private void relayoutDirty() {
+        if (layoutDirty.isEmpty()) return;
+        for (Container cont : layoutDirty) {
+            if (cont != this && !SwingUtilities.isDescendingFrom(cont, this)) continue;
+            if (cont.getLayout() instanceof BorderLayout bl) {
+                reapplyConstraints(cont, bl);
             }
-            cont.validate();
+            cont.invalidate();
             cont.repaint();
         }
+        layoutDirty.clear();
+        validate();
+    }
+
+    /**
+     * Re-adds, at its current index, each child whose "layoutConstraint" client property
+     * differs from the position the BorderLayout has it in. Other children are left alone.
+     */
+    private void reapplyConstraints(Container cont, BorderLayout bl) {
         for (Component c : cont.getComponents()) {
-            if (c instanceof Container child) {
-                reapplyConstraints(child);
+            Object key = c instanceof JComponent jc ? jc.getClientProperty("layoutConstraint") : null;
+            if (key == null) key = BorderLayout.CENTER;
+            if (!key.equals(bl.getConstraints(c))) {
+                int index = cont.getComponentZOrder(c);
+                cont.remove(c);
+                cont.add(c, key, index);
             }
         }
     }
 
-    /** deepest JPanel under design-surface coords (null ⇒ root) */
+    /** deepest JPanel under design-surface coords, looking through {@code exclude} and its children (null ⇒ root) */
     private Container findContainerAt(Point p, Component exclude) {
-        Component hit = SwingUtilities.getDeepestComponentAt(this, p.x, p.y);
+        Component hit = indexLive ? deepestIndexedAt(p, exclude) : SwingUtilities.getDeepestComponentAt(this, p.x, p.y);
         while (hit != null) {
             if (hit == exclude) {
                 hit = hit.getParent();
@@ -281,6 +344,90 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
         return null;
     }
 
+    /* ───── Spatial index ───── */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        Toolkit.getDefaultToolkit().addAWTEventListener(indexUpdater,
+                AWTEvent.COMPONENT_EVENT_MASK | AWTEvent.CONTAINER_EVENT_MASK);
+        Toolkit.getDefaultToolkit().addAWTEventListener(structureWatcher, AWTEvent.CONTAINER_EVENT_MASK);
+        index.clear();
+        for (Component c : getComponents()) indexSubtree(c);
+        indexLive = true;
+    }
+
+    @Override
+    public void removeNotify() {
+        Toolkit.getDefaultToolkit().removeAWTEventListener(indexUpdater);
+        Toolkit.getDefaultToolkit().removeAWTEventListener(structureWatcher);
+        indexLive = false;
+        index.clear();
+        super.removeNotify();
+    }
+
+    /** Adds, removes and moves index entries; moves are queued events, add/remove arrive synchronously. */
+    private void updateIndex(AWTEvent e) {
+        if (e instanceof ContainerEvent ce) {
+            Container parent = ce.getContainer();
+            if (parent != this && !SwingUtilities.isDescendingFrom(parent, this)) return;
+            if (ce.getID() == ContainerEvent.COMPONENT_ADDED) {
+                indexSubtree(ce.getChild());
+            } else if (ce.getID() == ContainerEvent.COMPONENT_REMOVED) {
+                unindexSubtree(ce.getChild());
+            }
+        } else if (e instanceof ComponentEvent ce
+                && (ce.getID() == ComponentEvent.COMPONENT_MOVED || ce.getID() == ComponentEvent.COMPONENT_RESIZED)
+                && index.contains(ce.getComponent())) {
+            // children keep their parent-relative bounds, so a move shifts the whole subtree
+            indexSubtree(ce.getComponent());
+        }
+    }
+
+    private void indexSubtree(Component c) {
+        if (c.getParent() == null || !SwingUtilities.isDescendingFrom(c, this)) return;
+        index.put(c, SwingUtilities.convertRectangle(c.getParent(), c.getBounds(), this));
+        if (c instanceof Container cont) {
+            for (Component child : cont.getComponents()) indexSubtree(child);
+        }
+    }
+
+    private void unindexSubtree(Component c) {
+        index.remove(c);
+        if (c instanceof Container cont) {
+            for (Component child : cont.getComponents()) unindexSubtree(child);
+        }
+    }
+
+    /** Same answer as {@link SwingUtilities#getDeepestComponentAt} on this surface, from the index when it is live. */
+    Component componentAt(Point p) {
+        return indexLive ? deepestIndexedAt(p, null) : SwingUtilities.getDeepestComponentAt(this, p.x, p.y);
+    }
+
+    /**
+     * Descends from the surface like {@link Container#getComponentAt}: at each level the visible
+     * child with the lowest z-order index that contains the point wins. Only the index hits
+     * are considered, so the cost depends on how many rectangles overlap the point.
+     */
+    private Component deepestIndexedAt(Point p, Component exclude) {
+        if (!contains(p)) return null;
+        List<Component> hits = index.query(p);
+        Component deepest = this;
+        while (true) {
+            Component top = null;
+            int topZ = Integer.MAX_VALUE;
+            for (Component c : hits) {
+                if (c.getParent() != deepest || c == exclude || !c.isVisible()) continue;
+                int z = ((Container) deepest).getComponentZOrder(c);
+                if (z < topZ) {
+                    top = c;
+                    topZ = z;
+                }
+            }
+            if (top == null) return deepest;
+            deepest = top;
+        }
+    }
+
     /** convert a point from design-surface coords → target container coords */
     private Point convertPointTo(Container target, Point pOnSurface) {
         return SwingUtilities.convertPoint(this, pOnSurface, target);
@@ -298,33 +445,142 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
                     if (c2 != c1 && c2 instanceof JComponent jc2 &&
                             candidate.equals(jc2.getName())) { clash = true; break; }
                 }
-                if (!clash) { jc1.setName(candidate); break; }
+                if (!clash) {
+                    if (!candidate.equals(base)) post(new DesignEvent.PropertyChanged(jc1, "name", base, candidate));
+                    jc1.setName(candidate);
+                    break;
+                }
                 candidate = base + (++n);
             }
         }
     }
 
-    /* ───── Movable & resizable behaviour ───── */
-    public void installDragResizeBehavior(JComponent c) {
-        for(MouseListener l : c.getMouseListeners()) {
-            if (l instanceof MoveResizeAdapter) {
-                return;
+    /* ───── Observers ───── */
+    /** Notified once per EDT cycle with everything that changed in it. */
+    public void addDesignEventListener(DesignEventListener l){ eventL.add(l);}
+    public void removeDesignEventListener(DesignEventListener l){ eventL.remove(l);}
+    /** Notified once per batch, without the details. */
+    public void addDesignChangeListener(DesignChangeListener l){ eventL.add(events -> l.designChanged());}
+    public void addSelectionListener(SelectionListener l){ selectL.add(l);}
+    /** Notified at most {@value #DRAG_PREVIEW_FPS} times per second while a drag is in progress. */
+    public void addDragPreviewListener(DesignChangeListener l){ dragPreviewL.add(l);}
+    private void notifyChange()   { revalidate(); repaint(); scheduleFlush();}
+
+    /** Queue an event for the batch of the current EDT cycle. */
+    void post(DesignEvent e) {
+        if (importing) return;
+        pendingEvents.add(e);
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) return;
+        flushScheduled = true;
+        SwingUtilities.invokeLater(this::flushEvents);
+    }
+
+    /** A batch may be empty: the design changed in a way none of the event types describe. */
+    private void flushEvents() {
+        flushScheduled = false;
+        List<DesignEvent> batch = Collections.unmodifiableList(DesignEvent.coalesce(pendingEvents));
+        pendingEvents.clear();
+        for (DesignEventListener l : new ArrayList<>(eventL)) l.designChanged(batch);
+    }
+
+    /**
+     * Adds and removals anywhere below the surface, whoever makes them. Container events
+     * arrive after the fact, so a removal only knows its old index when it went through
+     * {@link #removeChild}.
+     */
+    private void postStructureEvent(AWTEvent e) {
+        if (!(e instanceof ContainerEvent ce)) return;
+        Container parent = ce.getContainer();
+        if (parent != this && !SwingUtilities.isDescendingFrom(parent, this)) return;
+        Component child = ce.getChild();
+        if (ce.getID() == ContainerEvent.COMPONENT_ADDED) {
+            post(new DesignEvent.ComponentAdded(child, parent, parent.getComponentZOrder(child)));
+        } else if (ce.getID() == ContainerEvent.COMPONENT_REMOVED) {
+            post(new DesignEvent.ComponentRemoved(child, parent, child == removingChild ? removingIndex : -1));
+        }
+    }
+
+    /** Removes {@code c} from its parent so that the published event carries its old index. */
+    void removeChild(Component c) {
+        Container parent = c.getParent();
+        removingChild = c;
+        removingIndex = parent.getComponentZOrder(c);
+        try {
+            parent.remove(c);
+        } finally {
+            removingChild = null;
+            removingIndex = -1;
+        }
+    }
+
+    /** Sets bounds chosen in the designer and publishes a {@link DesignEvent.BoundsChanged}. */
+    private void setDesignBounds(JComponent c, Rectangle r) {
+        Rectangle old = c.getBounds();
+        c.setBounds(r);
+        CodeManager.markDirty(c);
+        post(new DesignEvent.BoundsChanged(c, old, c.getBounds()));
+    }
+
+    private void setDesignZOrder(Component c, int index) {
+        Container parent = c.getParent();
+        int old = parent.getComponentZOrder(c);
+        parent.setComponentZOrder(c, index);
+        CodeManager.markDirty(parent);
+        post(new DesignEvent.ZOrderChanged(c, parent, old, index));
+    }
+    private void notifySelection(Component c){
+        overlay.setSelection(c instanceof JComponent jc ? jc : null);
+        repaintGridHost(c);
+        selectL .forEach(l -> l.selectionChanged(c));
+    }
+
+    /** The snap grid follows the selection's parent, so only a change of that parent needs a repaint. */
+    private void repaintGridHost(Component c) {
+        Container host = c != null ? c.getParent() : null;
+        if (host == gridHost) return;
+        if (snapToGrid) {
+            for (Container h : new Container[]{ gridHost, host }) {
+                if (h != null && SwingUtilities.isDescendingFrom(h, this)) {
+                    repaint(SwingUtilities.convertRectangle(h.getParent(), h.getBounds(), this));
+                }
             }
         }
-        MoveResizeAdapter adapter = new MoveResizeAdapter(c);
-        c.addMouseListener(adapter);
-        c.addMouseMotionListener(adapter);
+        gridHost = host;
     }
 
-    /* ───── Observers ───── */
-    public void addDesignChangeListener(DesignChangeListener l){ changeL.add(l);}
-    public void addSelectionListener(SelectionListener l){ selectL.add(l); selectL.add(c -> repaint());}
-    private void notifyChange()   { revalidate(); repaint(); changeL.forEach(DesignChangeListener::designChanged);}
-    private void notifySelection(Component c){ selectL .forEach(l -> l.selectionChanged(c)); }
+    /** Repaint only what a drag step touched: old and new bounds, plus the selection outline around them. */
+    private void repaintDragRegion(Rectangle before, Rectangle after) {
+        Rectangle dirty = before.union(after);
+        dirty.grow(OUTLINE_MARGIN, OUTLINE_MARGIN);
+        repaint(dirty);
+    }
+
+    /** Frame-rate capped: the one-shot timer is only armed if no preview is already pending. */
+    private void scheduleDragPreview() {
+        if (liveDragPreview && !dragPreviewL.isEmpty() && !dragPreviewTimer.isRunning()) {
+            dragPreviewTimer.start();
+        }
+    }
 
-    public void importProject(ProjectData proj) throws Exception {
+    /**
+     * Clears the design for a project that the returned builder attaches piece by piece.
+     * Design events are held back until {@link #endImport()}, so listeners see the
+     * finished tree once instead of every batch on the way there.
+     */
+    public ProjectCodec.SurfaceBuilder beginImport() {
+        importing = true;
         removeAll();
-        ModelBuilder.rebuildFromData(this, proj.root);
+        CodeManager.invalidateAll();
+        return new ProjectCodec.SurfaceBuilder(this);
+    }
+
+    public void endImport() {
+        importing = false;
+        pendingEvents.clear();
         revalidate();
         repaint();
     }
@@ -332,23 +588,46 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
 
     /* ───── helper classes ───── */
     @FunctionalInterface public interface DesignChangeListener { void designChanged(); }
+    @FunctionalInterface public interface DesignEventListener  { void designChanged(List<DesignEvent> batch); }
     @FunctionalInterface public interface SelectionListener    { void selectionChanged(Component c); }
 
-    /* ───── Component-level mouse adapter for move + resize + context menu ───── */
-    private class MoveResizeAdapter extends MouseAdapter {
-        private final JComponent target;
-        private final JPopupMenu popup = new JPopupMenu();
+    /* ───── Surface-wide mouse dispatcher for select + move + resize + context menu ───── */
+    private final MoveResizeHandler mouseHandler = new MoveResizeHandler();
+
+    /** Called by the overlay layer for every mouse event inside the surface, whichever child received it. */
+    void dispatchMouseEvent(MouseEvent e) {
+        switch (e.getID()) {
+            case MouseEvent.MOUSE_PRESSED  -> mouseHandler.mousePressed(e);
+            case MouseEvent.MOUSE_RELEASED -> mouseHandler.mouseReleased(e);
+            case MouseEvent.MOUSE_DRAGGED  -> mouseHandler.mouseDragged(e);
+            case MouseEvent.MOUSE_MOVED    -> mouseHandler.mouseMoved(e);
+            default -> { }
+        }
+    }
+
+    /**
+     * One instance for the whole surface: the component under the press (via the spatial
+     * index) becomes the target of the following drag, and every component shares one
+     * context menu, built on first use.
+     */
+    private class MoveResizeHandler {
+        private static final int HANDLE = 8;
+        private JPopupMenu popup;
+        private JComponent popupTarget;
+        private JComponent target;
         private Point  dragOffset;
         private boolean resizing;
-        private static final int HANDLE = 8;
+        private Rectangle pressBounds;
 
-        MoveResizeAdapter(JComponent target){
-            this.target = target;
+        private JPopupMenu popup() {
+            if (popup != null) return popup;
+            popup = new JPopupMenu();
 
             JMenuItem remove = new JMenuItem("Remove");
             remove.addActionListener(e -> {
-                Container parent = target.getParent();
-                parent.remove(target);
+                Container parent = popupTarget.getParent();
+                removeChild(popupTarget);
+                CodeManager.markDirty(parent);
                 notifySelection(null);
                 notifyChange();
             });
@@ -358,17 +637,14 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
 
             JMenuItem bringFront = new JMenuItem("Bring to Front");
             bringFront.addActionListener(e -> {
-                Container parent = target.getParent();
-                parent.setComponentZOrder(target, 0);
+                setDesignZOrder(popupTarget, 0);
                 notifyChange();
             });
             popup.add(bringFront);
 
             JMenuItem sendBack = new JMenuItem("Send to Back");
             sendBack.addActionListener(e -> {
-                Container parent = target.getParent();
-                int count = parent.getComponentCount();
-                parent.setComponentZOrder(target, count - 1);
+                setDesignZOrder(popupTarget, popupTarget.getParent().getComponentCount() - 1);
                 notifyChange();
             });
             popup.add(sendBack);
@@ -379,95 +655,113 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
 
             JMenuItem alignLeft = new JMenuItem("Left");
             alignLeft.addActionListener(e -> {
-                Rectangle r = target.getBounds();
+                Rectangle r = popupTarget.getBounds();
                 r.x = 0;
-                target.setBounds(r);
+                setDesignBounds(popupTarget, r);
                 notifyChange();
             });
             alignMenu.add(alignLeft);
 
             JMenuItem alignRight = new JMenuItem("Right");
             alignRight.addActionListener(e -> {
-                Rectangle r = target.getBounds();
-                int parentW = target.getParent().getWidth();
+                Rectangle r = popupTarget.getBounds();
+                int parentW = popupTarget.getParent().getWidth();
                 r.x = parentW - r.width;
-                target.setBounds(r);
+                setDesignBounds(popupTarget, r);
                 notifyChange();
             });
             alignMenu.add(alignRight);
 
             JMenuItem alignTop = new JMenuItem("Top");
             alignTop.addActionListener(e -> {
-                Rectangle r = target.getBounds();
+                Rectangle r = popupTarget.getBounds();
                 r.y = 0;
-                target.setBounds(r);
+                setDesignBounds(popupTarget, r);
                 notifyChange();
             });
             alignMenu.add(alignTop);
 
             JMenuItem alignBottom = new JMenuItem("Bottom");
             alignBottom.addActionListener(e -> {
-                Rectangle r = target.getBounds();
-                int parentH = target.getParent().getHeight();
+                Rectangle r = popupTarget.getBounds();
+                int parentH = popupTarget.getParent().getHeight();
                 r.y = parentH - r.height;
-                target.setBounds(r);
+                setDesignBounds(popupTarget, r);
                 notifyChange();
             });
             alignMenu.add(alignBottom);
 
             JMenuItem alignCenter = new JMenuItem("Center Horizontally");
             alignCenter.addActionListener(e -> {
-                Rectangle r = target.getBounds();
-                int parentW = target.getParent().getWidth();
+                Rectangle r = popupTarget.getBounds();
+                int parentW = popupTarget.getParent().getWidth();
                 r.x = (parentW - r.width) / 2;
-                target.setBounds(r);
+                setDesignBounds(popupTarget, r);
                 notifyChange();
             });
             alignMenu.add(alignCenter);
 
             JMenuItem alignMiddle = new JMenuItem("Center Vertically");
             alignMiddle.addActionListener(e -> {
-                Rectangle r = target.getBounds();
-                int parentH = target.getParent().getHeight();
+                Rectangle r = popupTarget.getBounds();
+                int parentH = popupTarget.getParent().getHeight();
                 r.y = (parentH - r.height) / 2;
-                target.setBounds(r);
+                setDesignBounds(popupTarget, r);
                 notifyChange();
             });
             alignMenu.add(alignMiddle);
 
             popup.add(alignMenu);
+            return popup;
+        }
+
+        /** The event's point in {@code c}'s coordinates, whichever component it was delivered to. */
+        private Point pointIn(MouseEvent e, Component c) {
+            return SwingUtilities.convertPoint(e.getComponent(), e.getPoint(), c);
         }
 
         /* helper: show popup across platforms */
         private void maybeShowPopup(MouseEvent e) {
-            if (!e.isPopupTrigger()) return;
-            popup.show(target, e.getX(), e.getY());
+            if (!e.isPopupTrigger() || target == null) return;
+            popupTarget = target;
+            Point p = pointIn(e, target);
+            popup().show(target, p.x, p.y);
         }
 
-        @Override
-        public void mousePressed(MouseEvent e) {
+        void mousePressed(MouseEvent e) {
+            Component hit = componentAt(pointIn(e, DesignSurfacePanel.this));
+            if (!(hit instanceof JComponent jc) || hit == DesignSurfacePanel.this) {
+                // allow the panel itself to be selected too
+                target = null;
+                dragOffset = null;
+                selectedComp = hit instanceof JComponent ? (JComponent) hit : null;
+                notifySelection(selectedComp);
+                return;
+            }
+            target = jc;
+            pressBounds = jc.getBounds();
             maybeShowPopup(e);
 
             LayoutManager lm = target.getParent().getLayout();
             if (lm == null) {
                 Rectangle r = target.getBounds();
-                resizing = (e.getX() >= r.width - HANDLE && e.getY() >= r.height - HANDLE);
-                dragOffset = e.getPoint();
+                Point p = pointIn(e, target);
+                resizing = (p.x >= r.width - HANDLE && p.y >= r.height - HANDLE);
+                dragOffset = p;
             } else {
                 resizing = false;
                 dragOffset = null;
             }
-            notifySelection(target);
 
             DesignSurfacePanel.this.selectedComp = target;
             DesignSurfacePanel.this.notifySelection(target);
-            DesignSurfacePanel.this.repaint();
         }
-        @Override
-        public void mouseReleased(MouseEvent e) {
+
+        void mouseReleased(MouseEvent e) {
             maybeShowPopup(e);
+            dragPreviewTimer.stop();
 
-            if(lockComponents) {
+            if(target == null || lockComponents) {
                 // if components are locked, do not allow any dragging or resizing
                 return;
             }
@@ -488,7 +782,8 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
 
                 // remove from old, add to new with constraint if needed
                 Container oldParent = target.getParent();
-                oldParent.remove(target);
+                removeChild(target);
+                CodeManager.markDirty(oldParent);
 
                 LayoutManager lm = newParent.getLayout();
                 Object cons = target.getClientProperty("layoutConstraint");
@@ -501,17 +796,21 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
                 }
 
                 target.setLocation(loc);
+                CodeManager.markDirty(target);
                 notifySelection(target);
-                System.out.println();
             }
 
+            // the whole drag is one bounds change
+            if (pressBounds != null) {
+                post(new DesignEvent.BoundsChanged(target, pressBounds, target.getBounds()));
+                pressBounds = target.getBounds();
+            }
             notifyChange();
         }
 
-        @Override
-        public void mouseDragged(MouseEvent e) {
+        void mouseDragged(MouseEvent e) {
 
-            if (dragOffset == null || lockComponents) {
+            if (target == null || dragOffset == null || lockComponents) {
                 return;
             }
 
@@ -521,9 +820,13 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
                 return;
             }
 
+            Rectangle before = SwingUtilities.convertRectangle(
+                    target.getParent(), target.getBounds(), DesignSurfacePanel.this);
+
             if (resizing) {
-                int newW = Math.max(20, e.getX());
-                int newH = Math.max(20, e.getY());
+                Point p = pointIn(e, target);
+                int newW = Math.max(20, p.x);
+                int newH = Math.max(20, p.y);
 
                 // snap to grid when appropriate
                 if (snapToGrid && target.getParent().getLayout() == null) {
@@ -532,10 +835,10 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
                 }
 
                 target.setSize(newW, newH);
+                CodeManager.markDirty(target);
             } else {
                 // compute the raw new location in parent coords
-                Point surfPt   = SwingUtilities.convertPoint(target, e.getPoint(), DesignSurfacePanel.this);
-                Point parentPt = SwingUtilities.convertPoint(DesignSurfacePanel.this, surfPt, target.getParent());
+                Point parentPt = pointIn(e, target.getParent());
                 Rectangle r    = target.getBounds();
 
                 int newX = parentPt.x - dragOffset.x;
@@ -548,24 +851,33 @@ public class DesignSurfacePanel extends JPanel implements DropTargetListener {
                 }
 
                 target.setBounds(newX, newY, r.width, r.height);
+                CodeManager.markDirty(target);
             }
 
-            notifyChange();
+            // queued COMPONENT_MOVED events arrive later; keep hit-testing exact meanwhile
+            if (indexLive) indexSubtree(target);
+
+            // the full design change is published once, on mouseReleased
+            repaintDragRegion(before, SwingUtilities.convertRectangle(
+                    target.getParent(), target.getBounds(), DesignSurfacePanel.this));
+            scheduleDragPreview();
         }
 
-        @Override
-        public void mouseMoved(MouseEvent e) {
-            LayoutManager lm = target.getParent().getLayout();
+        void mouseMoved(MouseEvent e) {
+            Component hit = componentAt(pointIn(e, DesignSurfacePanel.this));
+            if (!(hit instanceof JComponent jc) || hit == DesignSurfacePanel.this) return;
+            LayoutManager lm = jc.getParent().getLayout();
             if (lm == null) {
                 // show resize vs. move cursor in freeform mode
-                Rectangle r = target.getBounds();
-                if (e.getX() >= r.width - HANDLE && e.getY() >= r.height - HANDLE)
-                    target.setCursor(Cursor.getPredefinedCursor(Cursor.SE_RESIZE_CURSOR));
+                Rectangle r = jc.getBounds();
+                Point p = pointIn(e, jc);
+                if (p.x >= r.width - HANDLE && p.y >= r.height - HANDLE)
+                    jc.setCursor(Cursor.getPredefinedCursor(Cursor.SE_RESIZE_CURSOR));
                 else
-                    target.setCursor(Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR));
+                    jc.setCursor(Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR));
             } else {
                 // in managed mode, default cursor
-                target.setCursor(Cursor.getDefaultCursor());
+                jc.setCursor(Cursor.getDefaultCursor());
             }
         }
     }
@@ -2,6 +2,7 @@ package designer.ui;
 
 import designer.SwingDesignerApp;
 import designer.util.CodeManager;
+import designer.util.CompilerService;
 import designer.util.ResourceUtil;
 import javax.swing.*;
 import java.awt.*;
@@ -45,6 +46,9 @@ public class DesignerFrame extends JFrame {
         JCheckBoxMenuItem snapItem = new JCheckBoxMenuItem("Snap to Grid");
         snapItem.addActionListener(e -> designSurface.setSnapToGrid(snapItem.isSelected()));
         viewMenu.add(snapItem);
+        JCheckBoxMenuItem dragPreviewItem = new JCheckBoxMenuItem("Live Code While Dragging");
+        dragPreviewItem.addActionListener(e -> designSurface.setLiveDragPreview(dragPreviewItem.isSelected()));
+        viewMenu.add(dragPreviewItem);
         menuBar.add(viewMenu);
         JMenuItem gridSizeItem = new JMenuItem("Grid Size...");
         gridSizeItem.addActionListener(e -> {
@@ -102,7 +106,7 @@ public class DesignerFrame extends JFrame {
 
         // ─── CENTER COLUMN ─────────────────────────────────────────
         centerTabs = new JTabbedPane();
-        centerTabs.addTab("Design",  designSurface);
+        centerTabs.addTab("Design",  designSurface.getLayer());
         centerTabs.addTab("Preview", preview);
 
         // ─── RIGHT COLUMN ──────────────────────────────────────────
@@ -137,12 +141,17 @@ public class DesignerFrame extends JFrame {
         setupListenersAndBindings();
 
         designerView.setCode(CodeManager.generateCode(designSurface));
+
+        // pay javac's startup cost now rather than on the first Run
+        CompilerService.warmUp();
     }
 
     /** Wire up all your listeners and keybindings. */
     public void setupListenersAndBindings() {
         designSurface.addSelectionListener(inspector::setTarget);
-        designSurface.addDesignChangeListener(() -> codeTabs.setDesignerCode(CodeManager.generateCode(designSurface)));
+        // only the snapshot is taken here; the code is generated off the EDT
+        designSurface.addDesignChangeListener(() -> CodeManager.generateCodeAsync(designSurface, codeTabs::setDesignerCode));
+        designSurface.addDragPreviewListener(() -> CodeManager.generateCodeAsync(designSurface, codeTabs::setDesignerCode));
 
         // keybindings…
         InputMap  im = designSurface.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
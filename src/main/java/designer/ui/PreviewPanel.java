@@ -1,6 +1,8 @@
 package designer.ui;
 
 import designer.util.CodeManager;
+import designer.util.ModelBuilder;
+import designer.util.PreviewInterpreter;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -24,12 +26,28 @@ public class PreviewPanel extends JPanel {
         //add(new JLabel("Live Preview",SwingConstants.CENTER), BorderLayout.NORTH);
         add(new JScrollPane(canvas), BorderLayout.CENTER);
     }
+    /**
+     * Rebuild the preview. Without user code the design is interpreted straight from a
+     * model snapshot; javac is only involved when there is user code to run.
+     */
     public void refresh() {
         canvas.removeAll();
         canvas.setBackground(designSurface.getBackground());
         canvas.setLayout(designSurface.getLayout());
-        try { CodeManager.compileAndApply(this, codeView); }
-        catch (Exception ex) { ex.printStackTrace(); }
+        String userCode = codeView.getUserCode();
+        if (userCode == null || userCode.isBlank()) {
+            long start = System.nanoTime();
+            try {
+                PreviewInterpreter.apply(this, ModelBuilder.snapshot(designSurface));
+                OutputConsole.info("Preview built in " + (System.nanoTime() - start) / 1_000_000 + " ms (interpreted)");
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+                OutputConsole.error("Preview failed: " + ex.getMessage());
+            }
+        } else {
+            try { CodeManager.compileAndApply(this, codeView); }
+            catch (Exception ex) { ex.printStackTrace(); }
+        }
         canvas.revalidate(); canvas.repaint();
     }
 }
\ No newline at end of file
@@ -19,7 +19,9 @@ import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
-import java.beans.PropertyDescriptor;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 public class PropertyInspectorPanel extends JPanel {
@@ -45,6 +47,8 @@ public class PropertyInspectorPanel extends JPanel {
         this.designSurface.addSelectionListener(this::setTarget);
 
         this.model = new PropertyTableModel(ds::externalPropertyChanged);
+        // bounds, sizes and other unbound values change through the designer
+        this.designSurface.addDesignEventListener(this::designChanged);
 
         // ─── NORTH: header + selected name + search bar ─────────────────────
         JPanel north = new JPanel(new BorderLayout(5,0));
@@ -80,15 +84,16 @@ public class PropertyInspectorPanel extends JPanel {
             @Override
             public TableCellRenderer getCellRenderer(int viewRow, int col) {
                 if (col == 1) {
-                    int modelRow = convertRowIndexToModel(viewRow);
-                    PropertyDescriptor pd = model.getPropertyDescriptor(modelRow);
-                    if (pd != null) {
-                        Class<?> t = pd.getPropertyType();
-                        if (t == JPopupMenu.class)            return new PopupMenuCellRenderer();
-                        if (t == Dimension.class)            return dimRend;
-                        if (t == Color.class)                return colorRend;
-                        if (t == Font.class)                 return fontRend;
-                        if (Border.class.isAssignableFrom(t))return borderRend;
+                    PropertyTableModel.Property p = model.getProperty(convertRowIndexToModel(viewRow));
+                    if (p != null) {
+                        switch (p.renderer()) {
+                            case POPUP_MENU: return new PopupMenuCellRenderer();
+                            case DIMENSION:  return dimRend;
+                            case COLOR:      return colorRend;
+                            case FONT:       return fontRend;
+                            case BORDER:     return borderRend;
+                            default:         break;
+                        }
                     }
                 }
                 return super.getCellRenderer(viewRow, col);
@@ -97,17 +102,18 @@ public class PropertyInspectorPanel extends JPanel {
             @Override
             public TableCellEditor getCellEditor(int viewRow, int col) {
                 if (col == 1) {
-                    int modelRow = convertRowIndexToModel(viewRow);
-                    PropertyDescriptor pd = model.getPropertyDescriptor(modelRow);
-                    if (pd != null) {
-                        Class<?> t = pd.getPropertyType();
-                        if (t == JPopupMenu.class)                return new PopupMenuCellEditor();
-                        if (t == Dimension.class)                return dimEdit;
-                        if (t == Color.class)                    return colorEdit;
-                        if (t == Font.class)                     return fontEdit;
-                        if (Border.class.isAssignableFrom(t))     return borderEdit;
-                        if (LayoutManager.class.isAssignableFrom(t)) return layoutEdit;
-                        if (t == Boolean.class || t == boolean.class) return boolEdit;
+                    PropertyTableModel.Property p = model.getProperty(convertRowIndexToModel(viewRow));
+                    if (p != null) {
+                        switch (p.editor()) {
+                            case POPUP_MENU: return new PopupMenuCellEditor();
+                            case DIMENSION:  return dimEdit;
+                            case COLOR:      return colorEdit;
+                            case FONT:       return fontEdit;
+                            case BORDER:     return borderEdit;
+                            case LAYOUT:     return layoutEdit;
+                            case BOOLEAN:    return boolEdit;
+                            default:         break;
+                        }
                     }
                 }
                 return super.getCellEditor(viewRow, col);
@@ -141,8 +147,9 @@ public class PropertyInspectorPanel extends JPanel {
         constraintCombo.addActionListener(e -> {
             Component tgt = model.getTarget();
             if (tgt instanceof JComponent jc) {
+                Object old = jc.getClientProperty("layoutConstraint");
                 jc.putClientProperty("layoutConstraint", constraintCombo.getSelectedItem());
-                designSurface.externalPropertyChanged();
+                designSurface.externalPropertyChanged(jc, "layoutConstraint", old, constraintCombo.getSelectedItem());
             }
         });
         constraintPanel.add(constraintCombo);
@@ -158,9 +165,11 @@ public class PropertyInspectorPanel extends JPanel {
         ChangeListener gridChange = e -> {
             Component tgt = model.getTarget();
             if (tgt instanceof Container cont && cont.getLayout() instanceof GridLayout gl) {
+                int oldRows = gl.getRows(), oldCols = gl.getColumns();
                 gl.setRows((Integer)rowsSpinner.getValue());
                 gl.setColumns((Integer)colsSpinner.getValue());
-                designSurface.externalPropertyChanged();
+                designSurface.post(new DesignEvent.PropertyChanged(cont, "rows", oldRows, gl.getRows()));
+                designSurface.externalPropertyChanged(cont, "columns", oldCols, gl.getColumns());
             }
         };
         rowsSpinner.addChangeListener(gridChange);
@@ -187,8 +196,9 @@ public class PropertyInspectorPanel extends JPanel {
             int c = (Integer)cellColSpinner.getValue();
             r = Math.min(Math.max(0,r), rows-1);
             c = Math.min(Math.max(0,c), cols-1);
-            parent.remove(jc);
+            designSurface.removeChild(jc);
             parent.add(jc, r*cols + c);
+            designSurface.markLayoutDirty(parent);
             designSurface.externalPropertyChanged();
         };
         cellRowSpinner.addChangeListener(cellChange);
@@ -202,8 +212,9 @@ public class PropertyInspectorPanel extends JPanel {
         positionCombo.addActionListener(e -> {
             Component tgt = model.getTarget();
             if (tgt instanceof JComponent jc) {
+                Object old = jc.getClientProperty("positionType");
                 jc.putClientProperty("positionType", positionCombo.getSelectedItem());
-                designSurface.externalPropertyChanged();
+                designSurface.externalPropertyChanged(jc, "positionType", old, positionCombo.getSelectedItem());
             }
         });
 
@@ -280,8 +291,9 @@ public class PropertyInspectorPanel extends JPanel {
             GridBagConstraintsEditor editor = new GridBagConstraintsEditor();
             editor.load(gbc);
             editor.setListener(newGbc -> {
+                GridBagConstraints old = gbl.getConstraints(jc);
                 gbl.setConstraints(jc, newGbc);
-                designSurface.externalPropertyChanged();
+                designSurface.externalPropertyChanged(jc, "gridBagConstraints", old, newGbc);
             });
             gbcEditorHolder.add(new JLabel("GridBag Constraints:"), BorderLayout.NORTH);
             gbcEditorHolder.add(new JScrollPane(editor), BorderLayout.CENTER);
@@ -304,6 +316,43 @@ public class PropertyInspectorPanel extends JPanel {
         comp.add(header, BorderLayout.NORTH);
     }
 
+    /**
+     * Re-reads the target's values when a batch touches it, its children or one of its
+     * ancestors (which can move or resize it). A property the designer names is re-read
+     * alone; an empty batch is a change the surface could not describe.
+     */
+    private void designChanged(List<DesignEvent> batch) {
+        Component target = model.getTarget();
+        if (target == null) return;
+        if (batch.isEmpty()) {
+            model.refresh();
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        for (DesignEvent e : batch) {
+            Component c = e.component();
+            if (c == target && e instanceof DesignEvent.PropertyChanged p && p.name() != null) {
+                names.add(p.name());
+            } else if (SwingUtilities.isDescendingFrom(target, c) || touchesChildrenOf(e, target)) {
+                model.refresh();
+                return;
+            }
+        }
+        for (String name : names) {
+            if (!model.refresh(name)) {   // a client property or constraint: may show anywhere
+                model.refresh();
+                return;
+            }
+        }
+    }
+
+    private static boolean touchesChildrenOf(DesignEvent e, Component target) {
+        if (e instanceof DesignEvent.ComponentAdded a) return a.parent() == target;
+        if (e instanceof DesignEvent.ComponentRemoved r) return r.parent() == target;
+        if (e instanceof DesignEvent.Reparented r) return r.oldParent() == target || r.newParent() == target;
+        return false;
+    }
+
     /**
      * Refresh all controls when selection changes.
      */
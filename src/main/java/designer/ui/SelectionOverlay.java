@@ -0,0 +1,127 @@
+package designer.ui;
+
+import javax.swing.*;
+import javax.swing.plaf.LayerUI;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+
+/**
+ * Draws the selection outline, its resize handle and the hover highlight above the
+ * design surface, inside the surface's {@link JLayer}. Moving any of them repaints only
+ * the thin strips the old and new outline cover, never whole components.
+ * <p>
+ * The layer also sees every mouse event in the surface and hands it to the surface's
+ * single dispatcher, so no design component needs listeners of its own.
+ */
+public class SelectionOverlay extends LayerUI<DesignSurfacePanel>
+{
+    private static final int M = DesignSurfacePanel.OUTLINE_MARGIN;
+    private static final Stroke SELECTION_STROKE = new BasicStroke(
+            2f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1f, new float[]{4f, 4f}, 0f);
+    private static final Color HOVER_COLOR = new Color(255, 200, 0, 110);
+    private static final int HANDLE_SIZE = 2 * M;
+
+    private JLayer<? extends DesignSurfacePanel> layer;
+    private JComponent selected;
+    private JComponent hovered;
+    /** Where the outlines were last painted, in layer coordinates. */
+    private Rectangle paintedSelection;
+    private Rectangle paintedHover;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void installUI(JComponent c) {
+        super.installUI(c);
+        layer = (JLayer<? extends DesignSurfacePanel>) c;
+        layer.setLayerEventMask(AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK);
+    }
+
+    @Override
+    public void uninstallUI(JComponent c) {
+        layer.setLayerEventMask(0);
+        layer = null;
+        super.uninstallUI(c);
+    }
+
+    public void setSelection(JComponent c) {
+        Rectangle old = paintedSelection;
+        selected = c;
+        repaintOutline(old);
+        repaintOutline(boundsOf(c));
+    }
+
+    public void setHover(JComponent c) {
+        if (c == hovered) return;
+        Rectangle old = paintedHover;
+        hovered = c;
+        repaintOutline(old);
+        repaintOutline(boundsOf(c));
+    }
+
+    @Override
+    public void paint(Graphics g, JComponent c) {
+        super.paint(g, c);
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            paintedHover = hovered != selected ? boundsOf(hovered) : null;
+            if (paintedHover != null) {
+                g2.setColor(HOVER_COLOR);
+                g2.drawRect(paintedHover.x, paintedHover.y, paintedHover.width - 1, paintedHover.height - 1);
+            }
+
+            paintedSelection = boundsOf(selected);
+            if (paintedSelection != null) {
+                Rectangle r = paintedSelection;
+                g2.setColor(Color.ORANGE);
+                g2.setStroke(SELECTION_STROKE);
+                g2.drawRect(r.x, r.y, r.width - 1, r.height - 1);
+                // the resize handle only means something for free-form (null layout) parents
+                if (selected.getParent().getLayout() == null) {
+                    g2.fillRect(r.x + r.width - M, r.y + r.height - M, HANDLE_SIZE, HANDLE_SIZE);
+                }
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    @Override
+    protected void processMouseMotionEvent(MouseEvent e, JLayer<? extends DesignSurfacePanel> l) {
+        if (e.getID() == MouseEvent.MOUSE_MOVED) {
+            DesignSurfacePanel surface = l.getView();
+            Point p = SwingUtilities.convertPoint(e.getComponent(), e.getPoint(), surface);
+            Component hit = surface.componentAt(p);
+            setHover(hit != surface && hit instanceof JComponent jc ? jc : null);
+        }
+        l.getView().dispatchMouseEvent(e);
+    }
+
+    @Override
+    protected void processMouseEvent(MouseEvent e, JLayer<? extends DesignSurfacePanel> l) {
+        if (e.getID() == MouseEvent.MOUSE_EXITED
+                && !l.contains(SwingUtilities.convertPoint(e.getComponent(), e.getPoint(), l))) {
+            setHover(null);
+        }
+        l.getView().dispatchMouseEvent(e);
+    }
+
+    /** Bounds in layer coordinates, or null if the component is not on the surface. */
+    private Rectangle boundsOf(JComponent c) {
+        if (c == null || layer == null || c.getParent() == null
+                || !SwingUtilities.isDescendingFrom(c, layer.getView())) return null;
+        return SwingUtilities.convertRectangle(c.getParent(), c.getBounds(), layer);
+    }
+
+    /**
+     * Paint the four edge strips right away. Queued repaints of one component are merged
+     * into their bounding box, which would repaint everything inside the outline.
+     */
+    private void repaintOutline(Rectangle r) {
+        if (r == null || layer == null || !layer.isShowing()) return;
+        layer.paintImmediately(r.x - M, r.y - M, r.width + 2 * M, 2 * M);
+        layer.paintImmediately(r.x - M, r.y + r.height - M, r.width + 2 * M, 2 * M);
+        layer.paintImmediately(r.x - M, r.y + M, 2 * M, r.height - 2 * M);
+        layer.paintImmediately(r.x + r.width - M, r.y + M, 2 * M, r.height - 2 * M);
+    }
+}
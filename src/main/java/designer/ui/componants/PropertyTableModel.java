@@ -1,20 +1,76 @@
 package designer.ui.componants;
 
+import javax.swing.*;
+import javax.swing.border.Border;
 import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.beans.IntrospectionException;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
-import java.util.Arrays;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 public class PropertyTableModel extends AbstractTableModel {
+    private static final Property[] NO_PROPERTIES = new Property[0];
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
     private Component target;
-    private PropertyDescriptor[] props = new PropertyDescriptor[0];
+    private Property[] props = NO_PROPERTIES;
+    /** Value of every row, read when the target is set and re-read only when something changes it. */
+    private Object[] values = new Object[0];
+    private final PropertyChangeListener targetListener = this::targetPropertyChanged;
+
+    private final EditListener onEdit;
+
+    /** Told about every successful edit, with the value the property had before. */
+    @FunctionalInterface
+    public interface EditListener {
+        void propertyEdited(Component target, String name, Object oldValue, Object newValue);
+    }
+
+    /** Which renderer or editor the inspector uses for a value column cell. */
+    public enum CellKind { DEFAULT, POPUP_MENU, DIMENSION, COLOR, FONT, BORDER, LAYOUT, BOOLEAN }
 
-    private final Runnable onEdit;             // NEW
+    /**
+     * One row, resolved once per component class: accessors as {@link MethodHandle}s typed
+     * {@code (Object)Object} and {@code (Object,Object)void}, and the cell kinds for the value.
+     * {@code getter} or {@code setter} is null when the property has no such method.
+     */
+    public record Property(PropertyDescriptor descriptor, String name, Class<?> type,
+                           MethodHandle getter, MethodHandle setter,
+                           CellKind renderer, CellKind editor) {}
+
+    /** The shown rows of each component class; introspection runs once per class. */
+    private static final ClassValue<Property[]> PROPERTIES = new ClassValue<>() {
+        @Override protected Property[] computeValue(Class<?> type) {
+            try {
+                List<Property> rows = new ArrayList<>();
+                for (PropertyDescriptor pd : Introspector.getBeanInfo(type, Object.class).getPropertyDescriptors()) {
+                    if (hiddenProperties.contains(pd.getName())
+                            || pd.getName().toLowerCase().contains("listener")) continue;
+                    Class<?> t = pd.getPropertyType();
+                    CellKind editor = cellKind(t);
+                    CellKind renderer = editor == CellKind.LAYOUT || editor == CellKind.BOOLEAN ? CellKind.DEFAULT : editor;
+                    rows.add(new Property(pd, pd.getName(), t,
+                            handle(pd.getReadMethod(), GETTER), handle(pd.getWriteMethod(), SETTER), renderer, editor));
+                }
+                return rows.toArray(NO_PROPERTIES);
+            } catch (IntrospectionException e) {
+                return NO_PROPERTIES;
+            }
+        }
+    };
 
-    private final Set<String> hiddenProperties = Set.of(
+    private static final Set<String> hiddenProperties = Set.of(
             "UI", "UIClassID", "accessibleContext", "actionMap",
             "ancestorListeners", "baselineResizeBehavior", "component", "componentCount",
             "components", "containerListeners", "debugGraphicsOption", "focusTraversalKeys",
@@ -24,7 +80,7 @@ public class PropertyTableModel extends AbstractTableModel {
             "visibleRect"
     );
 
-    public PropertyTableModel(Runnable onEdit){ this.onEdit = onEdit; }
+    public PropertyTableModel(EditListener onEdit){ this.onEdit = onEdit; }
 
     @Override public int getRowCount(){ return props.length; }
     @Override public int getColumnCount(){ return 2; }
@@ -32,18 +88,18 @@ public class PropertyTableModel extends AbstractTableModel {
 
     @Override public Object getValueAt(int r,int c){
         if(target==null) return null;
-        PropertyDescriptor pd = props[r];
-        try{ return c==0?pd.getName():pd.getReadMethod().invoke(target);}catch(Exception e){return e.toString();}
+        Property p = props[r];
+        return c==0 ? p.name() : values[r];
     }
 
-    @Override public boolean isCellEditable(int r,int c){ return c==1 && props[r].getWriteMethod()!=null; }
+    @Override public boolean isCellEditable(int r,int c){ return c==1 && props[r].setter()!=null; }
 
     @Override
     public void setValueAt(Object v,int r,int c){
         if (target==null || c!=1) return;
 
-        PropertyDescriptor pd   = props[r];
-        Class<?> pType          = pd.getPropertyType();
+        Property p              = props[r];
+        Class<?> pType          = p.type();
         Object   value;
 
         if (v == null) {
@@ -67,11 +123,13 @@ public class PropertyTableModel extends AbstractTableModel {
         }
 
         try{
+            Object old = p.getter() != null ? (Object) p.getter().invokeExact((Object) target) : null;
             // always invoke setter, even if value==null
-            pd.getWriteMethod().invoke(target, value);
+            p.setter().invokeExact((Object) target, value);
+            values[r] = read(p);
             fireTableCellUpdated(r,c);
-            onEdit.run();
-        }catch(Exception ignored){}
+            onEdit.propertyEdited(target, p.name(), old, value);
+        }catch(Throwable ignored){}
     }
 
     /** expose the currently selected component */
@@ -79,25 +137,96 @@ public class PropertyTableModel extends AbstractTableModel {
         return target;
     }
 
-    public PropertyDescriptor getPropertyDescriptor(int row) {
+    public Property getProperty(int row) {
         return (row >= 0 && row < props.length) ? props[row] : null;
     }
 
+    public PropertyDescriptor getPropertyDescriptor(int row) {
+        Property p = getProperty(row);
+        return p != null ? p.descriptor() : null;
+    }
+
+    /** Same class as before: only the values change, so the columns and sorter stay as they are. */
     public void setTarget(Component comp) {
+        Property[] old = props;
+        if (target != null) target.removePropertyChangeListener(targetListener);
         this.target = comp;
-        if (comp == null) {
-            props = new PropertyDescriptor[0];
+        props = comp == null ? NO_PROPERTIES : PROPERTIES.get(comp.getClass());
+        values = new Object[props.length];
+        for (int r = 0; r < props.length; r++) values[r] = read(props[r]);
+        if (comp != null) comp.addPropertyChangeListener(targetListener);
+        if (props == old) {
+            fireTableDataChanged();
         } else {
-            try {
-                props = Arrays.stream(Introspector.getBeanInfo(comp.getClass(), Object.class).getPropertyDescriptors())
-                        .filter(pd -> !hiddenProperties.contains(pd.getName()))
-                        .filter(pd -> !pd.getName().toLowerCase().contains("listener"))
-                        .toArray(PropertyDescriptor[]::new);
-            } catch (IntrospectionException e) {
-                props = new PropertyDescriptor[0];
+            fireTableStructureChanged();
+        }
+    }
+
+    /**
+     * Re-reads every value and updates the rows that differ; for changes the target does
+     * not announce itself, such as a new size after a layout pass.
+     */
+    public void refresh() {
+        for (int r = 0; r < props.length; r++) refreshRow(r);
+    }
+
+    /** Re-reads the row of the named property; false if the target has no such row. */
+    public boolean refresh(String name) {
+        for (int r = 0; r < props.length; r++) {
+            if (props[r].name().equals(name)) {
+                refreshRow(r);
+                return true;
             }
         }
-        fireTableStructureChanged();
+        return false;
+    }
+
+    /** A bound property of the target changed: only its row is re-read. */
+    private void targetPropertyChanged(PropertyChangeEvent e) {
+        if (e.getPropertyName() == null) {
+            refresh();
+            return;
+        }
+        refresh(e.getPropertyName());
+    }
+
+    private void refreshRow(int r) {
+        Object v = read(props[r]);
+        if (!Objects.equals(v, values[r])) {
+            values[r] = v;
+            fireTableCellUpdated(r, 1);
+        }
+    }
+
+    private Object read(Property p) {
+        if (p.getter() == null) return null;
+        try {
+            return (Object) p.getter().invokeExact((Object) target);
+        } catch (Throwable e) {
+            return e.toString();
+        }
+    }
+
+    private static CellKind cellKind(Class<?> t) {
+        if (t == null)                                return CellKind.DEFAULT;
+        if (t == JPopupMenu.class)                    return CellKind.POPUP_MENU;
+        if (t == Dimension.class)                     return CellKind.DIMENSION;
+        if (t == Color.class)                         return CellKind.COLOR;
+        if (t == Font.class)                          return CellKind.FONT;
+        if (Border.class.isAssignableFrom(t))         return CellKind.BORDER;
+        if (LayoutManager.class.isAssignableFrom(t))  return CellKind.LAYOUT;
+        if (t == Boolean.class || t == boolean.class) return CellKind.BOOLEAN;
+        return CellKind.DEFAULT;
+    }
+
+    /** Null when there is no method, or it cannot be accessed through a handle. */
+    private static MethodHandle handle(Method m, MethodType type) {
+        if (m == null) return null;
+        try {
+            return MethodHandles.publicLookup().unreflect(m).asType(type);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
     }
 
     /* trivial string→primitive coercion */
@@ -0,0 +1,465 @@
+package designer.util;
+
+import designer.model.BorderData;
+import designer.model.GridBagData;
+import designer.model.LayoutData;
+import designer.model.MenuItemData;
+import designer.model.PopupMenuData;
+
+import java.awt.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Binary form of the project file, used for files named {@code *}{@value #EXTENSION}. It keeps
+ * exactly what the JSON form keeps and is read into the same {@link ProjectCodec.Sink}.
+ * <p>
+ * Strings and style values (fonts, colors, sizes, borders, layouts, grid-bag constraints) are
+ * interned in tables that both sides build as they stream: the first use writes the value,
+ * later uses write its index. Other numbers are varints, signed ones zigzag-encoded.
+ */
+public class BinaryProjectCodec
+{
+    public static final String EXTENSION = ".sdb";
+
+    private static final int MAGIC   = 0x53444231;   // "SDB1"
+    private static final int VERSION = 1;
+
+    /** A reference is 0 for null, 1 when the value follows, otherwise its table index + 2. */
+    private static final int REF_NULL = 0, REF_NEW = 1, REF_FIRST = 2;
+
+    private static final int F_VISIBLE = 1, F_HAS_ENABLED = 2, F_ENABLED = 4, F_BOUNDS = 8;
+
+    /** Border property value tags. */
+    private static final int V_NULL = 0, V_NUMBER = 1, V_STRING = 2, V_FALSE = 3, V_TRUE = 4, V_BORDER = 5;
+
+    private enum Style { FONT, COLOR, SIZE, BORDER, LAYOUT, GRID_BAG }
+
+    public static boolean handles(File file) {
+        return file.getName().toLowerCase(Locale.ROOT).endsWith(EXTENSION);
+    }
+
+    /* ───────────────────────── writing ───────────────────────── */
+
+    public static void write(OutputStream os, ProjectCodec.Snapshot s, IntConsumer progress) throws IOException {
+        Writer w = new Writer(new DataOutputStream(new BufferedOutputStream(os, 1 << 16)), progress);
+        w.out.writeInt(MAGIC);
+        writeVarint(w.out, VERSION);
+        w.popupMenus(s.popupMenus);
+        w.string(s.userCode);
+        w.component(s.root);
+        w.out.flush();
+    }
+
+    /** One component and its subtree, with tables of its own, for records outside a project file. */
+    static void writeTree(DataOutputStream out, ProjectCodec.Tree t) throws IOException {
+        new Writer(out, written -> {}).component(t);
+    }
+
+    static void writeMenus(DataOutputStream out, List<PopupMenuData> menus) throws IOException {
+        new Writer(out, written -> {}).popupMenus(menus);
+    }
+
+    private static final class Writer {
+        final DataOutputStream out;
+        private final IntConsumer progress;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<Style, Map<ByteBuffer, Integer>> styles = new EnumMap<>(Style.class);
+        /** Style values are encoded here first; their bytes are the table key. */
+        private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(64);
+        private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+
+        Writer(DataOutputStream out, IntConsumer progress) {
+            this.out = out;
+            this.progress = progress;
+            for (Style s : Style.values()) styles.put(s, new HashMap<>());
+        }
+
+        void popupMenus(List<PopupMenuData> menus) throws IOException {
+            writeVarint(out, menus.size());
+            for (PopupMenuData pm : menus) {
+                string(pm.name);
+                writeVarint(out, pm.items.size());
+                for (MenuItemData mi : pm.items) {
+                    string(mi.text);
+                    string(mi.actionCommand);
+                }
+            }
+        }
+
+        void component(ProjectCodec.Tree t) throws IOException {
+            ProjectCodec.NodeSpec n = t.node();
+            string(n.className);
+            string(n.name);
+            string(n.text);
+            int flags = (n.visible ? F_VISIBLE : 0)
+                    | (n.enabled != null ? F_HAS_ENABLED : 0)
+                    | (Boolean.TRUE.equals(n.enabled) ? F_ENABLED : 0)
+                    | (n.bounds != null ? F_BOUNDS : 0);
+            writeVarint(out, flags);
+            if (n.bounds != null) {
+                writeSigned(out, n.bounds.x);
+                writeSigned(out, n.bounds.y);
+                writeSigned(out, n.bounds.width);
+                writeSigned(out, n.bounds.height);
+            }
+            style(Style.SIZE, n.preferredSize);
+            style(Style.SIZE, n.minimumSize);
+            style(Style.SIZE, n.maximumSize);
+            style(Style.COLOR, n.background);
+            style(Style.COLOR, n.foreground);
+            style(Style.FONT, n.font);
+            style(Style.BORDER, n.border);
+            string(n.layoutConstraint);
+            string(n.positionType);
+            string(n.popupMenuName);
+            style(Style.GRID_BAG, n.gridBag);
+            style(Style.LAYOUT, n.layout);
+            progress.accept(t.index() + 1);
+
+            writeVarint(out, t.children().size());
+            for (ProjectCodec.Tree child : t.children()) component(child);
+        }
+
+        void string(String s) throws IOException {
+            if (s == null) {
+                writeVarint(out, REF_NULL);
+                return;
+            }
+            Integer index = strings.putIfAbsent(s, strings.size());
+            if (index != null) {
+                writeVarint(out, index + REF_FIRST);
+            } else {
+                writeVarint(out, REF_NEW);
+                writeUtf(out, s);
+            }
+        }
+
+        void style(Style kind, Object value) throws IOException {
+            if (value == null) {
+                writeVarint(out, REF_NULL);
+                return;
+            }
+            scratch.reset();
+            encodeStyle(scratchOut, kind, value);
+            byte[] bytes = scratch.toByteArray();
+            Map<ByteBuffer, Integer> table = styles.get(kind);
+            Integer index = table.putIfAbsent(ByteBuffer.wrap(bytes), table.size());
+            if (index != null) {
+                writeVarint(out, index + REF_FIRST);
+            } else {
+                writeVarint(out, REF_NEW);
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static void encodeStyle(DataOutputStream o, Style kind, Object value) throws IOException {
+        switch (kind) {
+            case FONT -> {
+                Font f = (Font) value;
+                writeNullableUtf(o, f.getName());
+                writeVarint(o, f.getStyle());
+                writeVarint(o, f.getSize());
+            }
+            case COLOR -> o.writeInt(((Color) value).getRGB());
+            case SIZE -> {
+                Dimension d = (Dimension) value;
+                writeSigned(o, d.width);
+                writeSigned(o, d.height);
+            }
+            case BORDER -> encodeBorder(o, (BorderData) value);
+            case LAYOUT -> {
+                LayoutData ld = (LayoutData) value;
+                writeNullableUtf(o, ld.type);
+                Integer[] fields = { ld.hgap, ld.vgap, ld.alignment, ld.rows, ld.cols };
+                int present = 0;
+                for (int i = 0; i < fields.length; i++) if (fields[i] != null) present |= 1 << i;
+                writeVarint(o, present);
+                for (Integer v : fields) if (v != null) writeSigned(o, v);
+            }
+            case GRID_BAG -> {
+                GridBagData gb = (GridBagData) value;
+                for (int v : new int[]{ gb.gridx, gb.gridy, gb.gridwidth, gb.gridheight }) writeSigned(o, v);
+                o.writeDouble(gb.weightx);
+                o.writeDouble(gb.weighty);
+                for (int v : new int[]{ gb.anchor, gb.fill, gb.ipadx, gb.ipady }) writeSigned(o, v);
+                writeVarint(o, gb.insets == null ? 0 : gb.insets.length + 1);
+                if (gb.insets != null) for (int v : gb.insets) writeSigned(o, v);
+            }
+        }
+    }
+
+    private static void encodeBorder(DataOutputStream o, BorderData bd) throws IOException {
+        writeNullableUtf(o, bd.type);
+        Map<String, Object> props = bd.properties != null ? bd.properties : Map.of();
+        writeVarint(o, props.size());
+        for (Map.Entry<String, Object> e : props.entrySet()) {
+            writeUtf(o, e.getKey());
+            Object v = e.getValue();
+            if (v instanceof BorderData nested) {
+                writeVarint(o, V_BORDER);
+                encodeBorder(o, nested);
+            } else if (v instanceof Number num) {
+                writeVarint(o, V_NUMBER);
+                writeSignedLong(o, num.longValue());
+            } else if (v instanceof String str) {
+                writeVarint(o, V_STRING);
+                writeUtf(o, str);
+            } else if (v instanceof Boolean b) {
+                writeVarint(o, b ? V_TRUE : V_FALSE);
+            } else {
+                writeVarint(o, V_NULL);
+            }
+        }
+    }
+
+    /* ───────────────────────── reading ───────────────────────── */
+
+    public static void read(InputStream in, ProjectCodec.Sink sink) throws IOException {
+        Reader r = new Reader(new DataInputStream(new BufferedInputStream(in, 1 << 16)));
+        if (r.in.readInt() != MAGIC) throw new IOException("Not a binary project file");
+        int version = readVarint(r.in);
+        if (version != VERSION) throw new IOException("Unsupported binary project version " + version);
+
+        sink.popupMenus(r.popupMenus());
+        String userCode = r.string();
+        sink.userCode(userCode == null ? "" : userCode);
+        r.component(sink, 0);
+        sink.finish();
+    }
+
+    static void readTree(DataInputStream in, ProjectCodec.Sink sink, int depth) throws IOException {
+        new Reader(in).component(sink, depth);
+    }
+
+    static List<PopupMenuData> readMenus(DataInputStream in) throws IOException {
+        return new Reader(in).popupMenus();
+    }
+
+    private static final class Reader {
+        final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private final Map<Style, List<Object>> styles = new EnumMap<>(Style.class);
+
+        Reader(DataInputStream in) {
+            this.in = in;
+            for (Style s : Style.values()) styles.put(s, new ArrayList<>());
+        }
+
+        List<PopupMenuData> popupMenus() throws IOException {
+            int count = readVarint(in);
+            List<PopupMenuData> menus = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                PopupMenuData pm = new PopupMenuData();
+                pm.name = string();
+                int items = readVarint(in);
+                pm.items = new ArrayList<>(items);
+                for (int j = 0; j < items; j++) {
+                    MenuItemData mi = new MenuItemData();
+                    mi.text = string();
+                    mi.actionCommand = string();
+                    pm.items.add(mi);
+                }
+                menus.add(pm);
+            }
+            return menus;
+        }
+
+        void component(ProjectCodec.Sink sink, int depth) throws IOException {
+            ProjectCodec.NodeSpec n = new ProjectCodec.NodeSpec();
+            n.className = string();
+            n.name = string();
+            n.text = string();
+            int flags = readVarint(in);
+            n.visible = (flags & F_VISIBLE) != 0;
+            if ((flags & F_HAS_ENABLED) != 0) n.enabled = (flags & F_ENABLED) != 0;
+            if ((flags & F_BOUNDS) != 0) {
+                n.bounds = new Rectangle(readSigned(in), readSigned(in), readSigned(in), readSigned(in));
+            }
+            n.preferredSize = size();
+            n.minimumSize = size();
+            n.maximumSize = size();
+            n.background = (Color) style(Style.COLOR);
+            n.foreground = (Color) style(Style.COLOR);
+            n.font = (Font) style(Style.FONT);
+            n.border = (BorderData) style(Style.BORDER);
+            n.layoutConstraint = string();
+            n.positionType = string();
+            n.popupMenuName = string();
+            n.gridBag = (GridBagData) style(Style.GRID_BAG);
+            n.layout = (LayoutData) style(Style.LAYOUT);
+
+            sink.open(n, depth);
+            int children = readVarint(in);
+            for (int i = 0; i < children; i++) component(sink, depth + 1);
+            sink.close(n, depth);
+        }
+
+        String string() throws IOException {
+            int ref = readVarint(in);
+            if (ref == REF_NULL) return null;
+            if (ref != REF_NEW) return strings.get(ref - REF_FIRST);
+            String s = readUtf(in);
+            strings.add(s);
+            return s;
+        }
+
+        /** Sizes are mutable, so every component gets its own copy of the interned one. */
+        private Dimension size() throws IOException {
+            Dimension d = (Dimension) style(Style.SIZE);
+            return d == null ? null : new Dimension(d);
+        }
+
+        Object style(Style kind) throws IOException {
+            int ref = readVarint(in);
+            if (ref == REF_NULL) return null;
+            List<Object> table = styles.get(kind);
+            if (ref != REF_NEW) return table.get(ref - REF_FIRST);
+            Object value = decodeStyle(in, kind);
+            table.add(value);
+            return value;
+        }
+    }
+
+    private static Object decodeStyle(DataInputStream in, Style kind) throws IOException {
+        return switch (kind) {
+            case FONT -> new Font(readNullableUtf(in), readVarint(in), readVarint(in));
+            case COLOR -> new Color(in.readInt(), true);
+            case SIZE -> new Dimension(readSigned(in), readSigned(in));
+            case BORDER -> decodeBorder(in);
+            case LAYOUT -> {
+                LayoutData ld = new LayoutData();
+                ld.type = readNullableUtf(in);
+                int present = readVarint(in);
+                Integer[] fields = new Integer[5];
+                for (int i = 0; i < fields.length; i++) if ((present & 1 << i) != 0) fields[i] = readSigned(in);
+                ld.hgap = fields[0];
+                ld.vgap = fields[1];
+                ld.alignment = fields[2];
+                ld.rows = fields[3];
+                ld.cols = fields[4];
+                yield ld;
+            }
+            case GRID_BAG -> {
+                GridBagData gb = new GridBagData();
+                gb.gridx = readSigned(in);
+                gb.gridy = readSigned(in);
+                gb.gridwidth = readSigned(in);
+                gb.gridheight = readSigned(in);
+                gb.weightx = in.readDouble();
+                gb.weighty = in.readDouble();
+                gb.anchor = readSigned(in);
+                gb.fill = readSigned(in);
+                gb.ipadx = readSigned(in);
+                gb.ipady = readSigned(in);
+                int insets = readVarint(in);
+                if (insets > 0) {
+                    gb.insets = new int[insets - 1];
+                    for (int i = 0; i < gb.insets.length; i++) gb.insets[i] = readSigned(in);
+                }
+                yield gb;
+            }
+        };
+    }
+
+    /** Numbers come back as Integer when they fit, like Jackson reads them from JSON. */
+    private static BorderData decodeBorder(DataInputStream in) throws IOException {
+        BorderData bd = new BorderData();
+        bd.type = readNullableUtf(in);
+        int count = readVarint(in);
+        bd.properties = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = readUtf(in);
+            int tag = readVarint(in);
+            bd.properties.put(key, switch (tag) {
+                case V_BORDER -> decodeBorder(in);
+                case V_NUMBER -> {
+                    long v = readSignedLong(in);
+                    yield v == (int) v ? (Object) (int) v : (Object) v;
+                }
+                case V_STRING -> readUtf(in);
+                case V_TRUE -> Boolean.TRUE;
+                case V_FALSE -> Boolean.FALSE;
+                default -> null;
+            });
+        }
+        return bd;
+    }
+
+    /* ───────────────────────── primitives ───────────────────────── */
+
+    static void writeVarint(DataOutput o, int v) throws IOException {
+        writeVarLong(o, v & 0xFFFFFFFFL);
+    }
+
+    static void writeSigned(DataOutput o, int v) throws IOException {
+        writeVarint(o, (v << 1) ^ (v >> 31));
+    }
+
+    private static void writeSignedLong(DataOutput o, long v) throws IOException {
+        writeVarLong(o, (v << 1) ^ (v >> 63));
+    }
+
+    private static void writeVarLong(DataOutput o, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            o.writeByte((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        o.writeByte((int) v);
+    }
+
+    static int readVarint(DataInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    static int readSigned(DataInput in) throws IOException {
+        int v = readVarint(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long readSignedLong(DataInput in) throws IOException {
+        long v = readVarLong(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /** Length-prefixed UTF-8; unlike {@link DataOutput#writeUTF} not limited to 64 KB. */
+    private static void writeUtf(DataOutput o, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(o, bytes.length);
+        o.write(bytes);
+    }
+
+    private static String readUtf(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableUtf(DataOutput o, String s) throws IOException {
+        o.writeBoolean(s != null);
+        if (s != null) writeUtf(o, s);
+    }
+
+    private static String readNullableUtf(DataInput in) throws IOException {
+        return in.readBoolean() ? readUtf(in) : null;
+    }
+}
@@ -3,125 +3,330 @@ package designer.util;
 import designer.ui.CodeTabbedPane;
 import designer.ui.DesignSurfacePanel;
 import designer.ui.OutputConsole;
-import designer.types.PositionType;
 
 import javax.swing.*;
 import javax.swing.border.*;
-import javax.tools.JavaCompiler;
-import javax.tools.JavaFileObject;
-import javax.tools.StandardJavaFileManager;
-import javax.tools.ToolProvider;
 import java.awt.*;
-import java.io.File;
-import java.lang.reflect.Method;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.lang.ref.WeakReference;
+import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class CodeManager
 {
+    /** Guarded by the generate() lock. */
     private static int anonCount = 0;
 
+    /** Snapshot node per live component, reused until the component is marked dirty. EDT only. */
+    private static final Map<Component, CachedNode> SNAPSHOTS = new WeakHashMap<>();
+    /** Popup-menu registry version the cached nodes were captured against. */
+    private static int snapshotMenuVersion = -1;
+    /** Emitted code per snapshot node (whole subtree); nodes compare by identity. Guarded by the generate() lock. */
+    private static final Map<DesignSnapshot.Node, Fragment> FRAGMENTS = new WeakHashMap<>();
+
+    private static final ExecutorService CODEGEN = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "codegen-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final AtomicLong latestGeneration = new AtomicLong();
+    private static Future<?> pendingGeneration;
+
+    private static final String LAYOUT_CLASS = "LiveLayout";
+    private static final String USER_CLASS   = "LiveUserCode";
+    /** Statements per generated layout method, keeping each one far below the 64KB bytecode limit. */
+    private static final int LAYOUT_CHUNK_LINES = 400;
+    /** "Type name = new ..." — how the generator declares every component, menu and constraint. */
+    private static final Pattern DECLARATION = Pattern.compile("^([A-Z]\\w*) (\\w+) = new (.*)$");
+
+    private static final String IMPORTS =
+            "import designer.ui.DesignSurfacePanel;\n" +
+                    "import javax.swing.*;\n" +
+                    "import java.awt.*;\n" +
+                    "import java.awt.datatransfer.DataFlavor;\n" +
+                    "import java.awt.dnd.*;\n" +
+                    "import java.awt.event.MouseAdapter;\n" +
+                    "import java.awt.event.MouseEvent;\n" +
+                    "import java.awt.event.MouseListener;\n" +
+                    "import java.awt.geom.Area;\n" +
+                    "import java.util.*;\n" +
+                    "import java.util.List;\n" +
+                    "import java.util.concurrent.atomic.AtomicInteger;\n" +
+                    "import java.util.stream.Collectors;\n";
+
     /**
-     * 1) Wrap the user's code in a tiny helper class
-     * 2) Invoke the JavaCompiler API
-     * 3) Load it with a URLClassLoader
-     * 4) Call its static apply(DesignSurfacePanel) method to mutate your live surface
+     * 1) Wrap the generated layout and the user's code in two separate {@link LiveUnit} classes
+     * 2) Compile each in memory on the {@link CompilerService} worker (cached per unit)
+     * 3) Define both from the class bytes with a fresh, {@link LoaderPool}-tracked class loader
+     * 4) Run the layout unit, then the user unit, against the live panel
+     * Steps 3 and 4 run on the EDT once compilation has finished. Editing only the user
+     * code leaves the layout unit's source, and therefore its cache entry, untouched.
      */
     public static void compileAndApply(JPanel panel, CodeTabbedPane codeView) {
         try {
-            String className = "LiveDesign";
-            // 1) Build full source with imports, reusing the existing root panel
-            String src =
-                    "import designer.ui.DesignSurfacePanel;\n" +
-                            "import javax.swing.*;\n" +
-                            "import java.awt.*;\n" +
-                            "import java.awt.datatransfer.DataFlavor;\n" +
-                            "import java.awt.dnd.*;\n" +
-                            "import java.awt.event.MouseAdapter;\n" +
-                            "import java.awt.event.MouseEvent;\n" +
-                            "import java.awt.event.MouseListener;\n" +
-                            "import java.awt.geom.Area;\n" +
-                            "import java.util.*;\n" +
-                            "import java.util.List;\n" +
-                            "import java.util.concurrent.atomic.AtomicInteger;\n" +
-                            "import java.util.stream.Collectors;\n" +
-                            "public class " + className + " {\n" +
-                            "  public static void apply(JPanel ds) throws Exception {\n" +
-                            "    // reuse the existing designer panel as our root\n" +
-                            "    JPanel panel = ds;\n" +
-                            "    // clear out any old children\n" +
-                            "    panel.removeAll();\n" +
-                            // insert the user's layout code directly into the existing panel
-                            codeView.getDesignerCode().replace("JPanel panel = new JPanel();", "") + "\n" +
-                            (panel instanceof DesignSurfacePanel ? "" : codeView.getUserCode() + "\n") +
-                            "    // refresh display\n" +
-                            "    panel.revalidate(); panel.repaint();\n" +
-                            "  }\n" +
-                            "}\n";
-
-            // 2) Write source to a temp file and compile
-            File tmpDir = Files.createTempDirectory("dyn").toFile();
-            File srcFile = new File(tmpDir, className + ".java");
-            Files.writeString(srcFile.toPath(), src, StandardCharsets.UTF_8);
-
-            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-            try (StandardJavaFileManager fm = compiler.getStandardFileManager(null, null, null)) {
-                Iterable<? extends JavaFileObject> units =
-                        fm.getJavaFileObjectsFromFiles(List.of(srcFile));
-
-                boolean success = compiler.getTask(
-                        null,
-                        fm,
-                        null,
-                        List.of("-d", tmpDir.getAbsolutePath()),
-                        null,
-                        units
-                ).call();
-                if (!success) throw new RuntimeException("Compilation failed");
-            }
+            String designerCode = codeView.getDesignerCode().replace("JPanel panel = new JPanel();", "");
+            String userCode     = panel instanceof DesignSurfacePanel ? "" : codeView.getUserCode();
+
+            // 1) Build the unit sources
+            Map<String, String> declared = declaredVariables(designerCode);
+            String layoutSrc = layoutUnitSource(designerCode, declared);
+            String userSrc   = userCode.isBlank() ? null : userUnitSource(userCode, declared);
+
+            // 2) Compile in memory on the compiler worker; only apply() comes back to the EDT
+            CompletableFuture<CompilerService.CompileResult> layoutF =
+                    CompilerService.compile(Map.of(LAYOUT_CLASS, layoutSrc), List.of());
+            CompletableFuture<CompilerService.CompileResult> userF = userSrc == null
+                    ? CompletableFuture.completedFuture(null)
+                    : CompilerService.compile(Map.of(USER_CLASS, userSrc), List.of());
+
+            layoutF.thenCombine(userF, (layout, user) -> new CompilerService.CompileResult[]{ layout, user })
+                    .whenComplete((units, err) -> SwingUtilities.invokeLater(() -> {
+                        if (err != null) {
+                            Throwable cause = err.getCause() != null ? err.getCause() : err;
+                            cause.printStackTrace();
+                            OutputConsole.error("Run failed: " + cause.getMessage());
+                            return;
+                        }
+                        OutputConsole.info(LAYOUT_CLASS + " " + units[0].describe());
+                        if (units[1] != null) OutputConsole.info(USER_CLASS + " " + units[1].describe());
+                        apply(units[0], units[1], panel);
+                    }));
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+            OutputConsole.error("Run failed: " + ex.getMessage());
+        }
+    }
 
-            // 3) Load the compiled class and invoke apply(ds)
-            try (URLClassLoader loader = new URLClassLoader(
-                    new URL[]{ tmpDir.toURI().toURL() },
-                    panel.getClass().getClassLoader()
-            )) {
-                Class<?> liveCls = Class.forName(className, true, loader);
-                Method m = liveCls.getMethod("apply", JPanel.class);
-                m.invoke(null, panel);
-                if( panel instanceof DesignSurfacePanel designPanel) {
-                    designPanel.externalPropertyChanged();  // ensure the design surface is refreshed
-                }
+    /** 3) + 4) on the EDT: define the compiled units and run them against the panel. */
+    private static void apply(CompilerService.CompileResult layout, CompilerService.CompileResult user, JPanel panel) {
+        try {
+            Map<String, byte[]> classes = new HashMap<>(layout.classes());
+            if (user != null) classes.putAll(user.classes());
+            // drop what earlier runs left on the panel before their loaders can be collected
+            LoaderPool.retire(panel);
+            // parent must see LiveUnit and the designer classes the units were compiled against
+            ClassLoader loader = LoaderPool.newLoader(classes, CodeManager.class.getClassLoader());
+            Map<String, Object> vars = new HashMap<>();
+            unit(loader, LAYOUT_CLASS).apply(panel, vars);
+            if (user != null) {
+                unit(loader, USER_CLASS).apply(panel, vars);
+            }
+            // refresh display
+            panel.revalidate();
+            panel.repaint();
+            if( panel instanceof DesignSurfacePanel designPanel) {
+                designPanel.externalPropertyChanged();  // ensure the design surface is refreshed
             }
             OutputConsole.info("Run successful!");
         } catch (Throwable ex) {
             ex.printStackTrace();
             OutputConsole.error("Run failed: " + ex.getMessage());
         }
+        OutputConsole.info(LoaderPool.describe());
+    }
+
+    private static LiveUnit unit(ClassLoader loader, String className) throws Exception {
+        Class<?> cls = Class.forName(className, true, loader);
+        return (LiveUnit) cls.getDeclaredConstructor().newInstance();
+    }
+
+    /** Variables the generated layout declares, name to type, in declaration order. */
+    private static Map<String, String> declaredVariables(String designerCode) {
+        Map<String, String> vars = new LinkedHashMap<>();
+        for (String line : designerCode.split("\n")) {
+            Matcher m = DECLARATION.matcher(line);
+            if (m.matches()) vars.putIfAbsent(m.group(2), m.group(1));
+        }
+        return vars;
+    }
+
+    /**
+     * The generated layout as a LiveUnit. Declarations become fields so the statements can be
+     * split across several methods at the blank lines between component blocks.
+     */
+    private static String layoutUnitSource(String designerCode, Map<String, String> declared) {
+        StringBuilder src = new StringBuilder(IMPORTS)
+                .append("public class ").append(LAYOUT_CLASS).append(" implements designer.util.LiveUnit {\n");
+        declared.forEach((name, type) -> src.append("  ").append(type).append(' ').append(name).append(";\n"));
+
+        List<StringBuilder> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder();
+        int lines = 0;
+        for (String line : designerCode.split("\n")) {
+            Matcher m = DECLARATION.matcher(line);
+            part.append(m.matches() ? m.group(2) + " = new " + m.group(3) : line).append('\n');
+            if (++lines >= LAYOUT_CHUNK_LINES && line.isBlank()) {
+                parts.add(part);
+                part = new StringBuilder();
+                lines = 0;
+            }
+        }
+        parts.add(part);
+
+        src.append("  public void apply(JPanel ds, Map<String, Object> $vars) throws Exception {\n")
+                .append("    // reuse the existing designer panel as our root\n")
+                .append("    JPanel panel = ds;\n")
+                .append("    // clear out any old children\n")
+                .append("    panel.removeAll();\n");
+        for (int i = 0; i < parts.size(); i++) {
+            src.append("    part").append(i).append("(panel);\n");
+        }
+        declared.keySet().forEach(name ->
+                src.append("    $vars.put(\"").append(name).append("\", ").append(name).append(");\n"));
+        src.append("  }\n");
+        for (int i = 0; i < parts.size(); i++) {
+            src.append("  private void part").append(i).append("(JPanel panel) throws Exception {\n")
+                    .append(parts.get(i))
+                    .append("  }\n");
+        }
+        return src.append("}\n").toString();
+    }
+
+    /** The user's code as a LiveUnit; the layout's variables are re-declared as locals first. */
+    private static String userUnitSource(String userCode, Map<String, String> declared) {
+        StringBuilder src = new StringBuilder(IMPORTS)
+                .append("public class ").append(USER_CLASS).append(" implements designer.util.LiveUnit {\n")
+                .append("  public void apply(JPanel ds, Map<String, Object> $vars) throws Exception {\n")
+                .append("    JPanel panel = ds;\n");
+        declared.forEach((name, type) -> src.append("    ").append(type).append(' ').append(name)
+                .append(" = (").append(type).append(") $vars.get(\"").append(name).append("\");\n"));
+        return src.append(userCode).append('\n')
+                .append("  }\n")
+                .append("}\n").toString();
+    }
+
+    /**
+     * Drops the cached snapshot nodes of {@code c} and all of its ancestors, so the next
+     * capture copies them again and the generator re-emits them. Clean subtrees are reused as-is.
+     */
+    public static void markDirty(Component c) {
+        for (Component p = c; p != null; p = p.getParent()) {
+            SNAPSHOTS.remove(p);
+        }
     }
 
+    /** Forget every cached snapshot node, e.g. after the whole surface was rebuilt. */
+    public static void invalidateAll() {
+        SNAPSHOTS.clear();
+    }
+
+    /** Captures and generates on the calling thread, for callers that need the code right away. */
     public static String generateCode(DesignSurfacePanel panel) {
+        DesignSnapshot snapshot = capture(panel);
+        // supersede any background generation still in flight
+        latestGeneration.incrementAndGet();
+        return generate(snapshot);
+    }
+
+    /**
+     * Copies the design on the EDT and generates its code on the codegen worker; only
+     * {@code onEdt} runs back on the EDT. Each call supersedes the generations still pending,
+     * so a burst of changes delivers just the newest code.
+     */
+    public static void generateCodeAsync(DesignSurfacePanel panel, Consumer<String> onEdt) {
+        DesignSnapshot snapshot = capture(panel);
+        long generation = latestGeneration.incrementAndGet();
+        if (pendingGeneration != null) {
+            pendingGeneration.cancel(false);
+        }
+        pendingGeneration = CODEGEN.submit(() -> {
+            if (generation != latestGeneration.get()) return;
+            try {
+                String code = generate(snapshot);
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == latestGeneration.get()) onEdt.accept(code);
+                });
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                SwingUtilities.invokeLater(() -> OutputConsole.error("Code generation failed: " + ex.getMessage()));
+            }
+        });
+    }
+
+    /* ───── EDT side: snapshot ───── */
+
+    private static DesignSnapshot capture(DesignSurfacePanel panel) {
+        // nodes carry resolved popup-menu names, so any registry change invalidates them
+        if (snapshotMenuVersion != PopupMenuManager.getVersion()) {
+            SNAPSHOTS.clear();
+        }
+        DesignSnapshot.Node root = new DesignSnapshot.Node(panel, captureChildren(panel, false));
+        // menus last: the capture may have registered popups that were unknown so far
+        List<DesignSnapshot.Menu> menus = DesignSnapshot.captureMenus();
+        snapshotMenuVersion = PopupMenuManager.getVersion();
+        return new DesignSnapshot(menus, root);
+    }
+
+    private static List<DesignSnapshot.Node> captureChildren(Container cont, boolean recopy) {
+        List<DesignSnapshot.Node> children = new ArrayList<>();
+        for (Component c : cont.getComponents()) {
+            if (c instanceof JComponent jc) children.add(captureNode(jc, cont, recopy));
+        }
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Reuses the cached node of a clean component. Below a dirty one everything is copied
+     * again, since a change may cascade into children (e.g. a combo's arrow button follows
+     * its background), but a copy equal to the cached node is dropped in favour of the
+     * cached one so the generator still recognises it.
+     */
+    private static DesignSnapshot.Node captureNode(JComponent jc, Container parent, boolean recopy) {
+        CachedNode cached = SNAPSHOTS.get(jc);
+        if (!recopy && cached != null && cached.matches(jc, parent)) {
+            return cached.node();
+        }
+        DesignSnapshot.Node node = new DesignSnapshot.Node(jc, parent, popupMenuNameOf(jc), captureChildren(jc, true));
+        if (cached != null && cached.node().sameAs(node)) {
+            node = cached.node();
+        }
+        SNAPSHOTS.put(jc, new CachedNode(node, new WeakReference<>(parent.getLayout())));
+        return node;
+    }
+
+    /** Registry name of the component's popup menu, registering menus the registry does not know yet. */
+    private static String popupMenuNameOf(JComponent jc) {
+        // first try the actual popup, then fall back to "savedPopup" client prop
+        JPopupMenu pmRef = jc.getComponentPopupMenu();
+        if (pmRef == null && jc.getClientProperty("savedPopup") instanceof JPopupMenu saved) {
+            pmRef = saved;
+        }
+        if (pmRef == null) return null;
+        String menuName = PopupMenuManager.menuNameOf(pmRef);
+        if (menuName == null) {
+            // auto-register unknown menu
+            menuName = "popupMenu" + PopupMenuManager.getMenuNames().size();
+            PopupMenuManager.putMenu(menuName, pmRef);
+        }
+        return menuName;
+    }
+
+    /* ───── worker side: code generation ───── */
+
+    private static synchronized String generate(DesignSnapshot snapshot) {
         anonCount = 0;
         StringBuilder sb = new StringBuilder("// ---- auto-generated layout ----\n");
-        for (String name : PopupMenuManager.getMenuNames()) {
-            String var = name.replaceAll("\\W+", "_");
+        for (DesignSnapshot.Menu menu : snapshot.menus) {
+            String var = menu.name().replaceAll("\\W+", "_");
             sb.append("JPopupMenu ").append(var)
                     .append(" = new JPopupMenu();\n");
-            JPopupMenu pm = PopupMenuManager.getMenu(name);
-            for (Component mi : pm.getComponents()) {
-                if (mi instanceof JMenuItem item) {
-                    sb.append(var)
-                            .append(".add(new JMenuItem(\"")
-                            .append(item.getText().replace("\"", "\\\""))
-                            .append("\"));\n");
-                }
+            for (String text : menu.items()) {
+                sb.append(var)
+                        .append(".add(new JMenuItem(\"")
+                        .append(String.valueOf(text).replace("\"", "\\\""))
+                        .append("\"));\n");
             }
             sb.append("\n");
         }
 
-        emitContainer(panel, "panel", sb, true);
+        emitContainer(snapshot.root, "panel", sb, true);
         return sb.toString();
     }
 
@@ -129,13 +334,13 @@ public class CodeManager
      * Recursively emits code for a container and *every* child component,
      * including preferred/minimum/maximum size calls.
      */
-    private static void emitContainer(Container cont, String var, StringBuilder sb, boolean isRoot) {
+    private static void emitContainer(DesignSnapshot.Node cont, String var, StringBuilder sb, boolean isRoot) {
         if (isRoot) {
             sb.append("JPanel ").append(var).append(" = new JPanel();\n")
-                    .append(var).append(".setLayout(").append(layoutExpr(cont.getLayout())).append(");\n\n");
+                    .append(var).append(".setLayout(").append(layoutExpr(cont.layout)).append(");\n\n");
         } else {
-            sb.append(var).append(".setLayout(").append(layoutExpr(cont.getLayout())).append(");\n");
-            Color bg = cont.getBackground();
+            sb.append(var).append(".setLayout(").append(layoutExpr(cont.layout)).append(");\n");
+            Color bg = cont.background;
             if (bg != null) {
                 sb.append(var).append(".setBackground(new Color(0x")
                         .append(String.format("%06X", bg.getRGB() & 0xFFFFFF)).append("));\n");
@@ -143,205 +348,175 @@ public class CodeManager
             sb.append("\n");
         }
 
-        PopupMenuManager.clearAll();
+        for (DesignSnapshot.Node child : cont.children) {
+            sb.append(fragmentOf(child, var));
+        }
+    }
 
-        for (Component c : cont.getComponents()) {
-            if (!(c instanceof JComponent jc)) continue;
+    /**
+     * Returns the code for one child and its whole subtree, reusing the fragment emitted
+     * for the same snapshot node when it lands under the same variable and anonymous-id offset.
+     */
+    private static String fragmentOf(DesignSnapshot.Node node, String var) {
+        Fragment cached = FRAGMENTS.get(node);
+        if (cached != null && cached.matches(var, anonCount)) {
+            anonCount = cached.anonEnd;
+            return cached.code;
+        }
+        int anonStart = anonCount;
+        StringBuilder sb = new StringBuilder();
+        emitComponent(node, var, sb);
+        Fragment fragment = new Fragment(var, anonStart, anonCount, sb.toString());
+        FRAGMENTS.put(node, fragment);
+        return fragment.code;
+    }
 
-            // decide variable name
-            String id = jc.getName();
-            if (id == null || id.isEmpty()) {
-                id = jc.getClass().getSimpleName().toLowerCase() + anonCount++;
-            }
+    /** Emits a single child of {@code var} (declaration, properties, add-call) and recurses into it. */
+    private static void emitComponent(DesignSnapshot.Node n, String var, StringBuilder sb) {
+        // decide variable name
+        String id = n.name;
+        if (id == null || id.isEmpty()) {
+            id = n.type.toLowerCase() + anonCount++;
+        }
 
-            // instantiate
-            sb.append(jc.getClass().getSimpleName())
-                    .append(" ").append(id)
-                    .append(" = new ").append(jc.getClass().getSimpleName())
-                    .append("();\n");
+        // instantiate
+        sb.append(n.type)
+                .append(" ").append(id)
+                .append(" = new ").append(n.type)
+                .append("();\n");
 
-            sb.append(id).append(".setName(\"").append(id).append("\");\n");
+        sb.append(id).append(".setName(\"").append(id).append("\");\n");
 
-            // text if applicable
-            if (jc instanceof AbstractButton ab && ab.getText() != null) {
-                sb.append(id)
-                        .append(".setText(\"")
-                        .append(ab.getText().replace("\"", "\\\""))
-                        .append("\");\n");
-            }
-            else if (jc instanceof JLabel lbl && lbl.getText() != null) {
-                sb.append(id)
-                        .append(".setText(\"")
-                        .append(lbl.getText().replace("\"", "\\\""))
-                        .append("\");\n");
-            }
-            else if (jc instanceof javax.swing.text.JTextComponent tc && tc.getText() != null) {
-                sb.append(id)
-                        .append(".setText(\"")
-                        .append(tc.getText().replace("\"", "\\\""))
-                        .append("\");\n");
-            }
-            else if (jc instanceof JComboBox<?> combo) {
-                Object sel = combo.getSelectedItem();
-                if (sel != null) {
-                    sb.append(id)
-                            .append(".setSelectedItem(\"")
-                            .append(sel.toString().replace("\"", "\\\""))
-                            .append("\");\n");
-                }
-            }
-            else if (jc instanceof JSpinner spinner) {
-                Object val = spinner.getValue();
-                if (val != null) {
-                    sb.append(id)
-                            .append(".setValue(")
-                            .append(val instanceof Number ? val : "\"" + val.toString().replace("\"", "\\\"") + "\"")
-                            .append(");\n");
-                }
-            }
+        // text / selected item / value if applicable
+        if (n.valueSetter != null) {
+            sb.append(id).append('.').append(n.valueSetter).append('(')
+                    .append(n.numericValue ? n.value : "\"" + n.value.replace("\"", "\\\"") + "\"")
+                    .append(");\n");
+        }
 
-            Font font = jc.getFont();
-            if (font != null) {
-                sb.append(id)
-                        .append(".setFont(new Font(\"")
-                        .append(font.getFamily().replace("\"", "\\\""))
-                        .append("\", ")
-                        .append(fontStyleExpr(font.getStyle()))
-                        .append(", ")
-                        .append(font.getSize())
-                        .append("));\n");
-            }
+        Font font = n.font;
+        if (font != null) {
+            sb.append(id)
+                    .append(".setFont(new Font(\"")
+                    .append(font.getFamily().replace("\"", "\\\""))
+                    .append("\", ")
+                    .append(fontStyleExpr(font.getStyle()))
+                    .append(", ")
+                    .append(font.getSize())
+                    .append("));\n");
+        }
 
-            if(jc.getAutoscrolls())
-            {
-                sb.append(id).append(".setAutoscrolls(true);\n");
-            }
+        if(n.autoscrolls)
+        {
+            sb.append(id).append(".setAutoscrolls(true);\n");
+        }
 
-            if(!jc.isEnabled())
-            {
-                sb.append(id).append(".setEnabled(false);\n");
-            }
+        if(!n.enabled)
+        {
+            sb.append(id).append(".setEnabled(false);\n");
+        }
 
-            Border border = jc.getBorder();
-            String data = borderExpr(border);
-            if (border != null && !data.isEmpty()) {
-                sb.append(id)
-                        .append(".setBorder(")
-                        .append(borderExpr(border))
-                        .append(");\n");
-            }
+        if (n.border != null) {
+            sb.append(id)
+                    .append(".setBorder(")
+                    .append(borderExpr(n.border))
+                    .append(");\n");
+        }
 
-            // layout
-            sb.append(id).append(".setLayout(").append(layoutExpr(jc.getLayout())).append(");\n");
+        // layout
+        sb.append(id).append(".setLayout(").append(layoutExpr(n.layout)).append(");\n");
 
-            // background / foreground
-            Color bgc = jc.getBackground(), fgc = jc.getForeground();
-            if (bgc != null) {
-                sb.append(id).append(".setBackground(new Color(0x")
-                        .append(String.format("%06X", bgc.getRGB() & 0xFFFFFF))
-                        .append("));\n");
-            }
-            if (fgc != null) {
-                sb.append(id).append(".setForeground(new Color(0x")
-                        .append(String.format("%06X", fgc.getRGB() & 0xFFFFFF))
-                        .append("));\n");
-            }
+        // background / foreground
+        Color bgc = n.background, fgc = n.foreground;
+        if (bgc != null) {
+            sb.append(id).append(".setBackground(new Color(0x")
+                    .append(String.format("%06X", bgc.getRGB() & 0xFFFFFF))
+                    .append("));\n");
+        }
+        if (fgc != null) {
+            sb.append(id).append(".setForeground(new Color(0x")
+                    .append(String.format("%06X", fgc.getRGB() & 0xFFFFFF))
+                    .append("));\n");
+        }
 
-            if(!jc.isVisible())
-            {
-                sb.append(id).append(".setVisible(false);\n");
-            }
+        if(!n.visible)
+        {
+            sb.append(id).append(".setVisible(false);\n");
+        }
 
-            // ─── popup-menu by reference ─────────────────────────────
-            // first try the actual popup, then fall back to "savedPopup" client prop
-            JPopupMenu pmRef = jc.getComponentPopupMenu();
-            if (pmRef == null) {
-                Object saved = jc.getClientProperty("savedPopup");
-                if (saved instanceof JPopupMenu) {
-                    pmRef = (JPopupMenu) saved;
-                }
-            }
-            if (pmRef != null) {
-                String menuName = PopupMenuManager.menuNameOf(pmRef);
-                if (menuName == null) {
-                    // auto-register unknown menu
-                    menuName = "popupMenu" + PopupMenuManager.getMenuNames().size();
-                    PopupMenuManager.putMenu(menuName, pmRef);
-                }
-                String varMenu = menuName.replaceAll("\\W+", "_");
-                sb.append(id).append(".setComponentPopupMenu(")
-                        .append(varMenu).append(");\n");
-            }
+        // ─── popup-menu by reference ─────────────────────────────
+        if (n.popupMenuName != null) {
+            String varMenu = n.popupMenuName.replaceAll("\\W+", "_");
+            sb.append(id).append(".setComponentPopupMenu(")
+                    .append(varMenu).append(");\n");
+        }
 
-            // preferred / minimum / maximum size
-            Dimension ps = jc.getPreferredSize();
-            if (ps != null) {
-                sb.append(id).append(".setPreferredSize(new Dimension(")
-                        .append(ps.width).append(", ").append(ps.height)
-                        .append("));\n");
-            }
-            Dimension ms = jc.getMinimumSize();
-            if (ms != null) {
-                sb.append(id).append(".setMinimumSize(new Dimension(")
-                        .append(ms.width).append(", ").append(ms.height)
-                        .append("));\n");
-            }
-            Dimension xs = jc.getMaximumSize();
-            if (xs != null) {
-                sb.append(id).append(".setMaximumSize(new Dimension(")
-                        .append(xs.width).append(", ").append(xs.height)
-                        .append("));\n");
-            }
+        // preferred / minimum / maximum size
+        Dimension ps = n.preferredSize;
+        if (ps != null) {
+            sb.append(id).append(".setPreferredSize(new Dimension(")
+                    .append(ps.width).append(", ").append(ps.height)
+                    .append("));\n");
+        }
+        Dimension ms = n.minimumSize;
+        if (ms != null) {
+            sb.append(id).append(".setMinimumSize(new Dimension(")
+                    .append(ms.width).append(", ").append(ms.height)
+                    .append("));\n");
+        }
+        Dimension xs = n.maximumSize;
+        if (xs != null) {
+            sb.append(id).append(".setMaximumSize(new Dimension(")
+                    .append(xs.width).append(", ").append(xs.height)
+                    .append("));\n");
+        }
 
-            // position & add
-            PositionType pt = (PositionType) jc.getClientProperty("positionType");
-            if (pt == null) pt = PositionType.ABSOLUTE;
-            if (pt == PositionType.ABSOLUTE) {
-                Rectangle r = jc.getBounds();
-                sb.append(id).append(".setBounds(")
-                        .append(r.x).append(", ").append(r.y).append(", ")
-                        .append(r.width).append(", ").append(r.height)
-                        .append(");\n");
-            }
+        // position & add
+        if (n.bounds != null) {
+            Rectangle r = n.bounds;
+            sb.append(id).append(".setBounds(")
+                    .append(r.x).append(", ").append(r.y).append(", ")
+                    .append(r.width).append(", ").append(r.height)
+                    .append(");\n");
+        }
 
-            if (cont.getLayout() instanceof GridBagLayout) {
-                // 1) generate a fresh GridBagConstraints
-                sb.append("GridBagConstraints ").append(id).append("Gbc = new GridBagConstraints();\n");
-                GridBagConstraints gbc = ((GridBagLayout)cont.getLayout()).getConstraints(jc);
-                // 2) emit each field
-                sb.append(id).append("Gbc.gridx=").append(gbc.gridx).append(";\n");
-                sb.append(id).append("Gbc.gridy=").append(gbc.gridy).append(";\n");
-                sb.append(id).append("Gbc.gridwidth=").append(gbc.gridwidth).append(";\n");
-                sb.append(id).append("Gbc.gridheight=").append(gbc.gridheight).append(";\n");
-                sb.append(id).append("Gbc.weightx=").append(gbc.weightx).append(";\n");
-                sb.append(id).append("Gbc.weighty=").append(gbc.weighty).append(";\n");
-                sb.append(id).append("Gbc.fill=").append("GridBagConstraints.")
-                        .append(fillName(gbc.fill)).append(";\n");
-                sb.append(id).append("Gbc.anchor=").append("GridBagConstraints.")
-                        .append(anchorName(gbc.anchor)).append(";\n");
-                sb.append(id).append("Gbc.ipadx=").append(gbc.ipadx).append(";\n");
-                sb.append(id).append("Gbc.ipady=").append(gbc.ipady).append(";\n");
-                sb.append(id).append("Gbc.insets=new Insets(")
-                        .append(gbc.insets.top).append(",").append(gbc.insets.left).append(",")
-                        .append(gbc.insets.bottom).append(",").append(gbc.insets.right).append(");\n");
-                // 3) add with constraints
-                sb.append(var).append(".add(").append(id).append(", ").append(id).append("Gbc);\n\n");
-            }
-            else
-            {
-                Object cons = jc.getClientProperty("layoutConstraint");
-                String constraint = cons!=null
-                        ? "BorderLayout." + cons.toString().toUpperCase()
-                        : "BorderLayout.CENTER";
-                sb.append(var).append(".add(")
-                        .append(id).append(", ").append(constraint)
-                        .append(");\n\n");
-            }
+        if (n.gridBag != null) {
+            // 1) generate a fresh GridBagConstraints
+            sb.append("GridBagConstraints ").append(id).append("Gbc = new GridBagConstraints();\n");
+            GridBagConstraints gbc = n.gridBag;
+            // 2) emit each field
+            sb.append(id).append("Gbc.gridx=").append(gbc.gridx).append(";\n");
+            sb.append(id).append("Gbc.gridy=").append(gbc.gridy).append(";\n");
+            sb.append(id).append("Gbc.gridwidth=").append(gbc.gridwidth).append(";\n");
+            sb.append(id).append("Gbc.gridheight=").append(gbc.gridheight).append(";\n");
+            sb.append(id).append("Gbc.weightx=").append(gbc.weightx).append(";\n");
+            sb.append(id).append("Gbc.weighty=").append(gbc.weighty).append(";\n");
+            sb.append(id).append("Gbc.fill=").append("GridBagConstraints.")
+                    .append(fillName(gbc.fill)).append(";\n");
+            sb.append(id).append("Gbc.anchor=").append("GridBagConstraints.")
+                    .append(anchorName(gbc.anchor)).append(";\n");
+            sb.append(id).append("Gbc.ipadx=").append(gbc.ipadx).append(";\n");
+            sb.append(id).append("Gbc.ipady=").append(gbc.ipady).append(";\n");
+            sb.append(id).append("Gbc.insets=new Insets(")
+                    .append(gbc.insets.top).append(",").append(gbc.insets.left).append(",")
+                    .append(gbc.insets.bottom).append(",").append(gbc.insets.right).append(");\n");
+            // 3) add with constraints
+            sb.append(var).append(".add(").append(id).append(", ").append(id).append("Gbc);\n\n");
+        }
+        else
+        {
+            Object cons = n.borderConstraint;
+            String constraint = cons!=null
+                    ? "BorderLayout." + cons.toString().toUpperCase()
+                    : "BorderLayout.CENTER";
+            sb.append(var).append(".add(")
+                    .append(id).append(", ").append(constraint)
+                    .append(");\n\n");
+        }
 
-            // recurse
-            if (jc.getComponentCount() > 0) {
-                emitContainer(jc, id, sb, false);
-            }
+        // recurse
+        if (!n.children.isEmpty()) {
+            emitContainer(n, id, sb, false);
         }
     }
 
@@ -360,30 +535,26 @@ public class CodeManager
     /**
      * Emit a BorderFactory expression for common Swing borders.
      */
-    private static String borderExpr(Border b) {
-        if (b instanceof LineBorder lb) {
-            Color c = lb.getLineColor();
-            int t = lb.getThickness();
+    private static String borderExpr(DesignSnapshot.BorderSpec b) {
+        if (b.type() == LineBorder.class) {
+            Color c = b.lineColor();
+            int t = b.thickness();
             return "BorderFactory.createLineBorder(new Color(0x"
                     + String.format("%06X", c.getRGB() & 0xFFFFFF)
                     + "), " + t + ")";
         }
-        else if (b instanceof EmptyBorder eb) {
-            Insets i = eb.getBorderInsets();
+        else if (b.type() == EmptyBorder.class) {
+            Insets i = b.insets();
             return "BorderFactory.createEmptyBorder("
                     + i.top + ", " + i.left + ", "
                     + i.bottom + ", " + i.right + ")";
         }
-        else if (b instanceof EtchedBorder) {
+        else if (b.type() == EtchedBorder.class) {
             return "BorderFactory.createEtchedBorder()";
         }
-        else if (b instanceof TitledBorder tb) {
-            String title = tb.getTitle().replace("\"", "\\\"");
-            return "BorderFactory.createTitledBorder(\"" + title + "\")";
-        }
         else {
-            // fallback for unhandled border types
-            return "";
+            String title = String.valueOf(b.title()).replace("\"", "\\\"");
+            return "BorderFactory.createTitledBorder(\"" + title + "\")";
         }
     }
 
@@ -410,13 +581,42 @@ public class CodeManager
         };
     }
 
-    private static String layoutExpr(LayoutManager lm) {
+    private static String layoutExpr(DesignSnapshot.LayoutSpec lm) {
         if (lm == null) return "null";
-        if (lm instanceof FlowLayout)   return "new FlowLayout()";
-        if (lm instanceof BorderLayout) return "new BorderLayout()";
-        if (lm instanceof GridLayout g) return "new GridLayout(" +
-                g.getRows() + "," + g.getColumns() + ")";
-        if (lm instanceof GridBagLayout) return "new GridBagLayout()";
+        Class<?> t = lm.type();
+        if (FlowLayout.class.isAssignableFrom(t))    return "new FlowLayout()";
+        if (BorderLayout.class.isAssignableFrom(t))  return "new BorderLayout()";
+        if (t == GridLayout.class)                   return "new GridLayout(" +
+                lm.rows() + "," + lm.columns() + ")";
+        if (GridBagLayout.class.isAssignableFrom(t)) return "new GridBagLayout()";
         /* fall-back */                 return "null";
     }
+
+    /** Snapshot node of a live component plus the parent layout it was captured under. */
+    private record CachedNode(DesignSnapshot.Node node, WeakReference<LayoutManager> parentLayout) {
+        /** Same name and same parent layout instance; anything else is reported via markDirty. */
+        boolean matches(JComponent jc, Container parent) {
+            return Objects.equals(node.name, jc.getName()) && parentLayout.get() == parent.getLayout();
+        }
+    }
+
+    /** Code emitted for one snapshot node (whole subtree) plus the position it was emitted at. */
+    private static final class Fragment {
+        private final String var;
+        private final int anonStart;
+        private final int anonEnd;
+        private final String code;
+
+        Fragment(String var, int anonStart, int anonEnd, String code) {
+            this.var = var;
+            this.anonStart = anonStart;
+            this.anonEnd = anonEnd;
+            this.code = code;
+        }
+
+        /** Same parent variable and the same anonymous-id offset. */
+        boolean matches(String var, int anonCount) {
+            return this.var.equals(var) && anonStart == anonCount;
+        }
+    }
 }
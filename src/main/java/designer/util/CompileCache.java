@@ -0,0 +1,168 @@
+package designer.util;
+
+import designer.ui.DesignSurfacePanel;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Compiled class bytes keyed by a SHA-256 of the sources and compiler options.
+ * A bounded in-memory LRU sits in front of an optional on-disk tier under the
+ * user's cache directory, so unchanged designs skip javac across runs and restarts.
+ * <p>
+ * The disk tier can be switched off with {@code -Dswingdesigner.compileCache.disk=false}.
+ */
+public class CompileCache
+{
+    private static final int MAX_MEMORY_ENTRIES = 32;
+    private static final int MAX_DISK_ENTRIES   = 256;
+    private static final boolean DISK_ENABLED =
+            !"false".equalsIgnoreCase(System.getProperty("swingdesigner.compileCache.disk"));
+
+    private static final Map<String, Map<String, byte[]>> MEMORY =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, byte[]>> eldest) {
+                    return size() > MAX_MEMORY_ENTRIES;
+                }
+            };
+
+    /** The designer classes generated code is compiled against (see the imports in {@link CodeManager}). */
+    private static final Class<?>[] COMPILED_AGAINST = { LiveUnit.class, DesignSurfacePanel.class };
+    private static final byte[] COMPILED_AGAINST_DIGEST = digestOf(COMPILED_AGAINST);
+
+    /**
+     * Hash of everything that determines the compiler output. The JDK version and the bytes of
+     * the designer classes the code refers to are included, so that a cached entry never
+     * outlives the classes it was compiled against, even when a rebuild keeps the class path.
+     */
+    public static String keyOf(Map<String, String> sources, List<String> options) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            update(md, System.getProperty("java.version"));
+            md.update(COMPILED_AGAINST_DIGEST);
+            for (String opt : options) update(md, opt);
+            for (String name : new TreeSet<>(sources.keySet())) {
+                update(md, name);
+                update(md, sources.get(name));
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] digestOf(Class<?>[] classes) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (Class<?> cls : classes) {
+                update(md, cls.getName());
+                try (InputStream in = cls.getResourceAsStream(cls.getSimpleName() + ".class")) {
+                    // not readable as a resource: fall back to the location it was loaded from
+                    if (in == null) update(md, String.valueOf(cls.getProtectionDomain().getCodeSource()));
+                    else md.update(in.readAllBytes());
+                }
+            }
+            return md.digest();
+        } catch (NoSuchAlgorithmException | IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void update(MessageDigest md, String s) {
+        md.update(String.valueOf(s).getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+    }
+
+    /** Cached class bytes for this key, or null. Falls through to the disk tier on a memory miss. */
+    public static synchronized Map<String, byte[]> get(String key) {
+        Map<String, byte[]> classes = MEMORY.get(key);
+        if (classes == null && DISK_ENABLED) {
+            classes = readDisk(key);
+            if (classes != null) MEMORY.put(key, classes);
+        }
+        return classes;
+    }
+
+    public static synchronized void put(String key, Map<String, byte[]> classes) {
+        MEMORY.put(key, classes);
+        if (DISK_ENABLED) writeDisk(key, classes);
+    }
+
+    /* ───── disk tier ───── */
+
+    private static Path cacheDir() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        String home = System.getProperty("user.home");
+        Path base;
+        if (os.contains("win") && System.getenv("LOCALAPPDATA") != null) {
+            base = Paths.get(System.getenv("LOCALAPPDATA"));
+        } else if (os.contains("mac")) {
+            base = Paths.get(home, "Library", "Caches");
+        } else if (System.getenv("XDG_CACHE_HOME") != null) {
+            base = Paths.get(System.getenv("XDG_CACHE_HOME"));
+        } else {
+            base = Paths.get(home, ".cache");
+        }
+        return base.resolve("SwingDesigner").resolve("compile");
+    }
+
+    private static Map<String, byte[]> readDisk(String key) {
+        Path file = cacheDir().resolve(key + ".bin");
+        if (!Files.isRegularFile(file)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = in.readInt();
+            Map<String, byte[]> classes = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.put(name, bytes);
+            }
+            // touch, so eviction keeps recently used entries
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return classes;
+        } catch (IOException ex) {
+            // corrupt or concurrently written entry: treat as a miss
+            return null;
+        }
+    }
+
+    private static void writeDisk(String key, Map<String, byte[]> classes) {
+        try {
+            Path dir = Files.createDirectories(cacheDir());
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(classes.size());
+                for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue().length);
+                    out.write(e.getValue());
+                }
+            }
+            Files.move(tmp, dir.resolve(key + ".bin"), StandardCopyOption.REPLACE_EXISTING);
+            evictDisk(dir);
+        } catch (IOException ex) {
+            // the disk tier is best-effort; the memory tier still holds the entry
+            ex.printStackTrace();
+        }
+    }
+
+    private static void evictDisk(Path dir) throws IOException {
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(dir)) {
+            entries = files.filter(p -> p.getFileName().toString().endsWith(".bin")).toList();
+        }
+        if (entries.size() <= MAX_DISK_ENTRIES) return;
+        entries.stream()
+                .sorted(Comparator.comparingLong(p -> p.toFile().lastModified()))
+                .limit(entries.size() - MAX_DISK_ENTRIES)
+                .forEach(p -> p.toFile().delete());
+    }
+}
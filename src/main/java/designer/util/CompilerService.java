@@ -0,0 +1,110 @@
+package designer.util;
+
+import designer.ui.OutputConsole;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves compile requests on one dedicated worker thread, so javac never runs on the EDT.
+ * {@link #warmUp()} compiles a throwaway unit at startup to pay javac's class loading
+ * and JIT warm-up before the first Run.
+ */
+public class CompilerService
+{
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "compiler-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final String WARMUP_SOURCE =
+            "import javax.swing.*;\n" +
+            "import java.awt.*;\n" +
+            "public class Warmup {\n" +
+            "  public static void apply(JPanel panel) {\n" +
+            "    JButton b = new JButton(\"warm\");\n" +
+            "    b.setBounds(0, 0, 10, 10);\n" +
+            "    panel.setLayout(new BorderLayout());\n" +
+            "    panel.add(b, BorderLayout.CENTER);\n" +
+            "  }\n" +
+            "}\n";
+
+    private static volatile long coldCompileMillis = -1;
+    private static volatile long lastCompileMillis = -1;
+    private static volatile int  compileCount = 0;
+    private static volatile boolean lastCompileCold = false;
+
+    /** Kick off the warm-up compile in the background; returns immediately. */
+    public static void warmUp() {
+        WORKER.submit(() -> {
+            try {
+                timedCompile(Map.of("Warmup", WARMUP_SOURCE), List.of());
+                long cold = coldCompileMillis;
+                SwingUtilities.invokeLater(() -> OutputConsole.info("Compiler warmed up in " + cold + " ms"));
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Compile on the worker thread; completes with the class bytes or the compile error.
+     * Sources that were compiled before (same hash) are served from {@link CompileCache} without javac.
+     */
+    public static CompletableFuture<CompileResult> compile(Map<String, String> sources, List<String> options) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            String key = CompileCache.keyOf(sources, options);
+            Map<String, byte[]> cached = CompileCache.get(key);
+            if (cached != null) {
+                return new CompileResult(cached, (System.nanoTime() - start) / 1_000_000, false, true);
+            }
+            Map<String, byte[]> classes = timedCompile(sources, options);
+            CompileCache.put(key, classes);
+            return new CompileResult(classes, lastCompileMillis, lastCompileCold, false);
+        }, WORKER);
+    }
+
+    private static Map<String, byte[]> timedCompile(Map<String, String> sources, List<String> options) {
+        long start = System.nanoTime();
+        try {
+            return InMemoryCompiler.compile(sources, options);
+        } finally {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            lastCompileCold = compileCount++ == 0;
+            if (lastCompileCold) coldCompileMillis = millis;
+            lastCompileMillis = millis;
+        }
+    }
+
+    /** Duration of the very first compile in this JVM (normally the warm-up), or -1. */
+    public static long getColdCompileMillis() {
+        return coldCompileMillis;
+    }
+
+    /** Duration of the most recent compile, or -1. */
+    public static long getLastCompileMillis() {
+        return lastCompileMillis;
+    }
+
+    /**
+     * Outcome of one compile request.
+     *
+     * @param millis time spent on the worker, javac or cache lookup
+     * @param cold   this was the first javac invocation in the JVM
+     * @param cached served from the compile cache, javac was skipped
+     */
+    public record CompileResult(Map<String, byte[]> classes, long millis, boolean cold, boolean cached) {
+        /** Short human-readable timing for the output console. */
+        public String describe() {
+            if (cached) return "loaded from compile cache in " + millis + " ms";
+            return "compiled in " + millis + " ms"
+                    + (cold ? " (cold)" : " (warm, cold start was " + coldCompileMillis + " ms)");
+        }
+    }
+}
@@ -0,0 +1,730 @@
+package designer.util;
+
+import designer.model.GridBagData;
+import designer.model.LayoutData;
+import designer.model.MenuItemData;
+import designer.model.PopupMenuData;
+import designer.types.PositionType;
+import designer.ui.DesignEvent;
+import designer.ui.DesignSurfacePanel;
+import designer.ui.OutputConsole;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import static designer.util.BinaryProjectCodec.readSigned;
+import static designer.util.BinaryProjectCodec.readVarint;
+import static designer.util.BinaryProjectCodec.writeSigned;
+import static designer.util.BinaryProjectCodec.writeVarint;
+
+/**
+ * Append-only log of the design changes made since the project file (the base) was last
+ * written, kept next to it as {@code <base>}{@value #SUFFIX}. An untitled design is journaled
+ * against {@link #recoveryBase()} instead.
+ * <p>
+ * Each batch of {@link DesignEvent}s becomes a few records that name components by id: their
+ * pre-order position in the base, then the next free numbers as components are added. A
+ * record carries only the node it touched, or the subtree it added. Records are appended and
+ * fsynced together on the project-io worker, at most {@value #FLUSH_DELAY_MS} ms after the
+ * change. Once the journal passes {@value #COMPACT_BYTES} bytes the design is written back to
+ * the base and the journal starts over; saving does the same.
+ * <p>
+ * Records are framed as varint length, payload, CRC-32, so a record torn by a crash is
+ * recognised and dropped when the journal is replayed.
+ */
+public class DesignJournal
+{
+    public static final String SUFFIX = ".journal";
+
+    private static final int MAGIC = 0x53444A31;   // "SDJ1"
+    private static final long FLUSH_DELAY_MS = 500;
+    private static final long COMPACT_BYTES = 512 * 1024;
+
+    /* Record types. An anchor is the id of the preceding sibling + 1, or 0 for the first place. */
+    private static final int MENUS  = 1;   // popup menus
+    private static final int ADD    = 2;   // parent id, anchor, subtree
+    private static final int REMOVE = 3;   // id
+    private static final int MOVE   = 4;   // id, parent id, anchor
+    private static final int BOUNDS = 5;   // id, x, y, width, height
+    private static final int NODE   = 6;   // id, node without children
+
+    private final DesignSurfacePanel surface;
+    private final Supplier<String> userCode;
+    private final DesignSurfacePanel.DesignEventListener listener = this::record;
+
+    /* EDT */
+    private Path base;
+    private final Map<Component, Integer> ids = new WeakHashMap<>();
+    private int nextId;
+    private int menuVersion;
+    private final Map<String, JPopupMenu> recordedMenus = new HashMap<>();
+    private int replayed = 0;
+    private boolean closed = false;
+
+    /* queued on the EDT, drained on the worker */
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean compactRequested = false;
+
+    /* project-io worker */
+    private FileChannel channel;
+    private Path journalBase;
+    private long length;
+
+    private record Rebase(Path base, ProjectCodec.Snapshot snapshot, IntConsumer progress, CompletableFuture<Long> done) {}
+    private record Close() {}
+
+    private DesignJournal(DesignSurfacePanel surface, Path base, Supplier<String> userCode) {
+        this.surface  = surface;
+        this.base     = base;
+        this.userCode = userCode;
+        assignIds();
+    }
+
+    /** Starts an empty journal for a surface that matches {@code base} (or is empty, if there is no base yet). */
+    public static DesignJournal start(DesignSurfacePanel surface, Path base, Supplier<String> userCode) {
+        DesignJournal j = new DesignJournal(surface, base, userCode);
+        ProjectIO.IO.execute(() -> j.startNow(base, -1));
+        surface.addDesignEventListener(j.listener);
+        return j;
+    }
+
+    /**
+     * Like {@link #start}, but first replays the journal left for {@code base}, if it was
+     * written against this version of the base. Call it while the surface holds its design
+     * events back, so that the replay is not journaled a second time.
+     */
+    public static DesignJournal resume(DesignSurfacePanel surface, Path base, Supplier<String> userCode) {
+        DesignJournal j = new DesignJournal(surface, base, userCode);
+        Path file = journalFor(base);
+        long keep = -1;
+        try {
+            if (Files.isRegularFile(file)) keep = j.replay(Files.readAllBytes(file));
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            OutputConsole.error("Could not read journal '" + file.getFileName() + "': " + ex.getMessage());
+        }
+        j.rememberMenus();
+        long valid = keep;
+        ProjectIO.IO.execute(() -> j.startNow(base, valid));
+        surface.addDesignEventListener(j.listener);
+        return j;
+    }
+
+    /** Changes applied by {@link #resume}. */
+    public int getReplayed() {
+        return replayed;
+    }
+
+    /** Where an untitled design is kept, so that it survives a crash before its first save. */
+    public static Path recoveryBase() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        String home = System.getProperty("user.home");
+        Path dir;
+        if (os.contains("win") && System.getenv("LOCALAPPDATA") != null) {
+            dir = Paths.get(System.getenv("LOCALAPPDATA"));
+        } else if (os.contains("mac")) {
+            dir = Paths.get(home, "Library", "Application Support");
+        } else if (System.getenv("XDG_DATA_HOME") != null) {
+            dir = Paths.get(System.getenv("XDG_DATA_HOME"));
+        } else {
+            dir = Paths.get(home, ".local", "share");
+        }
+        return dir.resolve("SwingDesigner").resolve("recovery").resolve("untitled" + BinaryProjectCodec.EXTENSION);
+    }
+
+    static Path journalFor(Path base) {
+        return base.resolveSibling(base.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Makes {@code snapshot}, taken just now, the new base: after the records already queued,
+     * the worker writes it to {@code newBase} and starts the journal over behind it.
+     * Completes with the size of the written file.
+     */
+    public CompletableFuture<Long> rebase(Path newBase, ProjectCodec.Snapshot snapshot, IntConsumer progress) {
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        base = newBase;
+        assignIds();
+        queue.add(new Rebase(newBase, snapshot, progress, done));
+        ProjectIO.IO.execute(this::drain);
+        return done;
+    }
+
+    /** Stops journaling. An untitled design's journal and recovery file are deleted with it. */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        surface.removeDesignEventListener(listener);
+        queue.add(new Close());
+        ProjectIO.IO.execute(this::drain);
+    }
+
+    /* ───────────────────────── recording (EDT) ───────────────────────── */
+
+    private void record(List<DesignEvent> batch) {
+        if (closed || batch.isEmpty()) return;
+        try {
+            List<byte[]> records = encode(batch);
+            if (records.isEmpty()) return;
+            queue.addAll(records);
+            if (flushScheduled.compareAndSet(false, true)) {
+                ProjectIO.IO.schedule(this::drain, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException | RuntimeException ex) {
+            ex.printStackTrace();
+            OutputConsole.error("Journal: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Records in the order a replay needs them: removals, then adds and moves in final
+     * z-order (so every anchor is in place before it is used), then bounds and properties.
+     */
+    private List<byte[]> encode(List<DesignEvent> batch) throws IOException {
+        List<byte[]> out = new ArrayList<>();
+        Map<Component, Boolean> placed = new LinkedHashMap<>();   // true when added, false when moved
+        Set<Component> bounds = new LinkedHashSet<>();
+        Set<Component> changed = new LinkedHashSet<>();
+
+        if (PopupMenuManager.getVersion() != menuVersion) {
+            List<PopupMenuData> menus = ProjectCodec.popupMenuData();
+            out.add(record(MENUS, o -> BinaryProjectCodec.writeMenus(o, menus)));
+            // a replay refills menus by name, so components still holding a menu that was
+            // removed or replaced since are recorded as well
+            Set<JPopupMenu> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+            recordedMenus.forEach((name, menu) -> {
+                if (PopupMenuManager.getMenu(name) != menu) dropped.add(menu);
+            });
+            rememberMenus();
+            if (!dropped.isEmpty()) {
+                walk(surface, c -> {
+                    if (c instanceof JComponent jc && dropped.contains(jc.getClientProperty("savedPopup"))) changed.add(c);
+                });
+            }
+        }
+        for (DesignEvent e : batch) {
+            Component c = e.component();
+            if (!SwingUtilities.isDescendingFrom(c, surface)) {
+                Integer id = ids.get(c);
+                if (id != null) {
+                    out.add(record(REMOVE, o -> writeVarint(o, id)));
+                    walk(c, ids::remove);
+                }
+                continue;
+            }
+            if (e instanceof DesignEvent.ComponentAdded) {
+                placed.put(c, true);
+            } else if (e instanceof DesignEvent.Reparented || e instanceof DesignEvent.ZOrderChanged) {
+                placed.putIfAbsent(c, false);
+            } else if (e instanceof DesignEvent.BoundsChanged) {
+                bounds.add(c);
+            } else if (e instanceof DesignEvent.PropertyChanged) {
+                changed.add(c);
+            }
+        }
+
+        // components new to the journal are recorded whole, from their topmost new ancestor;
+        // known components inside such a subtree are replaced by their fresh copies
+        Set<Component> freshRoots = new LinkedHashSet<>();
+        for (Map.Entry<Component, Boolean> e : placed.entrySet()) {
+            Component root = null;
+            for (Component p = e.getKey(); p != surface; p = p.getParent()) {
+                if (Boolean.TRUE.equals(placed.get(p)) || !ids.containsKey(p)) root = p;
+            }
+            if (root != null) freshRoots.add(root);
+        }
+        Set<Component> fresh = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Component root : freshRoots) walk(root, fresh::add);
+        for (Component c : fresh) {
+            Integer id = ids.remove(c);
+            if (id != null) out.add(record(REMOVE, o -> writeVarint(o, id)));
+        }
+
+        List<Component> placements = new ArrayList<>(freshRoots);
+        for (Component c : placed.keySet()) {
+            if (!fresh.contains(c)) placements.add(c);
+        }
+        placements.sort(Comparator.comparingInt(c -> c.getParent().getComponentZOrder(c)));
+        for (Component c : placements) {
+            int parentId = ids.get(c.getParent());
+            int anchor = anchorOf(c);
+            if (fresh.contains(c)) {
+                ProjectCodec.Tree tree = ProjectCodec.tree((Container) c, new int[]{ 0 });
+                walk(c, d -> ids.put(d, nextId++));   // the tree's pre-order
+                out.add(record(ADD, o -> {
+                    writeVarint(o, parentId);
+                    writeVarint(o, anchor);
+                    BinaryProjectCodec.writeTree(o, tree);
+                }));
+            } else {
+                int id = ids.get(c);
+                out.add(record(MOVE, o -> {
+                    writeVarint(o, id);
+                    writeVarint(o, parentId);
+                    writeVarint(o, anchor);
+                }));
+            }
+        }
+
+        for (Component c : bounds) {
+            Integer id = ids.get(c);
+            if (id == null || fresh.contains(c)) continue;
+            Rectangle b = c.getBounds();
+            out.add(record(BOUNDS, o -> {
+                writeVarint(o, id);
+                writeSigned(o, b.x);
+                writeSigned(o, b.y);
+                writeSigned(o, b.width);
+                writeSigned(o, b.height);
+            }));
+        }
+        for (Component c : changed) {
+            Integer id = ids.get(c);
+            if (id == null || fresh.contains(c)) continue;
+            ProjectCodec.Tree node = new ProjectCodec.Tree(ProjectCodec.describe((Container) c), 0, List.of());
+            out.add(record(NODE, o -> {
+                writeVarint(o, id);
+                BinaryProjectCodec.writeTree(o, node);
+            }));
+        }
+        return out;
+    }
+
+    private interface Body { void write(DataOutputStream o) throws IOException; }
+
+    private static byte[] record(int type, Body body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream o = new DataOutputStream(bytes);
+        writeVarint(o, type);
+        body.write(o);
+        return bytes.toByteArray();
+    }
+
+    private int anchorOf(Component c) {
+        Container parent = c.getParent();
+        int z = parent.getComponentZOrder(c);
+        return z == 0 ? 0 : ids.get(parent.getComponent(z - 1)) + 1;
+    }
+
+    /** Numbers the surface's components in pre-order, the order of {@link ProjectCodec#tree}. */
+    private void assignIds() {
+        ids.clear();
+        nextId = 0;
+        walk(surface, c -> ids.put(c, nextId++));
+        rememberMenus();
+    }
+
+    private void rememberMenus() {
+        menuVersion = PopupMenuManager.getVersion();
+        recordedMenus.clear();
+        for (String name : PopupMenuManager.getMenuNames()) recordedMenus.put(name, PopupMenuManager.getMenu(name));
+    }
+
+    private static void walk(Component c, Consumer<Component> visit) {
+        visit.accept(c);
+        if (c instanceof Container cont) {
+            for (Component child : cont.getComponents()) {
+                if (child instanceof Container) walk(child, visit);
+            }
+        }
+    }
+
+    /* ───────────────────────── replay (EDT) ───────────────────────── */
+
+    /** Returns how many bytes of the journal hold good records, or -1 if it belongs to another base. */
+    private long replay(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        long[] stamp = stamp(base);
+        if (data.length < 20 || in.readInt() != MAGIC || in.readLong() != stamp[0] || in.readLong() != stamp[1]) {
+            OutputConsole.info("Ignoring a journal written for another version of '" + base.getFileName() + "'");
+            return -1;
+        }
+        Map<Integer, Component> byId = new HashMap<>();
+        ids.forEach((c, id) -> byId.put(id, c));
+
+        long good = data.length - in.available();
+        while (in.available() > 0) {
+            byte[] payload;
+            try {
+                int len = readVarint(in);
+                if (len < 0 || (long) len + 4 > in.available()) break;
+                payload = new byte[len];
+                in.readFully(payload);
+                if (in.readInt() != crc(payload)) break;
+            } catch (EOFException ex) {
+                break;   // torn by a crash while it was written
+            }
+            try {
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), byId);
+            } catch (IOException | RuntimeException ex) {
+                ex.printStackTrace();
+                OutputConsole.error("Journal replay stopped after " + replayed + " changes: " + ex.getMessage());
+                break;
+            }
+            replayed++;
+            good = data.length - in.available();
+        }
+        return good;
+    }
+
+    private void apply(DataInputStream in, Map<Integer, Component> byId) throws IOException {
+        int type = readVarint(in);
+        switch (type) {
+            case MENUS -> replaceMenus(BinaryProjectCodec.readMenus(in));
+            case ADD -> {
+                Container parent = container(byId, readVarint(in));
+                Component anchor = anchor(byId, readVarint(in));
+                // built into a holder first, for the builder's depth-0 root
+                JPanel holder = new JPanel(null);
+                ProjectCodec.SurfaceBuilder builder = new ProjectCodec.SurfaceBuilder(holder, true);
+                ProjectCodec.NodeSpec holderSpec = new ProjectCodec.NodeSpec();
+                Capture top = new Capture(builder);
+                builder.open(holderSpec, 0);
+                BinaryProjectCodec.readTree(in, top, 1);
+                builder.close(holderSpec, 0);
+                Component c = holder.getComponent(0);
+                holder.remove(c);
+                place(parent, c, anchor, top.node.layoutConstraint, top.node.gridBag);
+                walk(c, d -> {
+                    byId.put(nextId, d);
+                    ids.put(d, nextId++);
+                });
+            }
+            case REMOVE -> {
+                Component c = component(byId, readVarint(in));
+                if (c.getParent() != null) c.getParent().remove(c);
+            }
+            case MOVE -> {
+                Component c = component(byId, readVarint(in));
+                Container parent = container(byId, readVarint(in));
+                Component anchor = anchor(byId, readVarint(in));
+                Object cons = c instanceof JComponent jc ? jc.getClientProperty("layoutConstraint") : null;
+                place(parent, c, anchor, cons == null ? null : cons.toString(), null);
+            }
+            case BOUNDS -> component(byId, readVarint(in))
+                    .setBounds(readSigned(in), readSigned(in), readSigned(in), readSigned(in));
+            case NODE -> {
+                Container c = container(byId, readVarint(in));
+                Capture node = new Capture(null);
+                BinaryProjectCodec.readTree(in, node, 0);
+                update(c, node.node);
+            }
+            default -> throw new IOException("Unknown journal record " + type);
+        }
+    }
+
+    /**
+     * Applies a MENUS record. Menus that exist already are refilled rather than replaced:
+     * components hold on to their menu, and a save finds its name by identity.
+     */
+    private static void replaceMenus(List<PopupMenuData> menus) {
+        Map<String, JPopupMenu> refilled = new LinkedHashMap<>();
+        for (PopupMenuData pm : menus) {
+            JPopupMenu menu = PopupMenuManager.getMenu(pm.name);
+            if (menu == null) menu = new JPopupMenu();
+            menu.removeAll();
+            for (MenuItemData mi : pm.items) {
+                JMenuItem item = new JMenuItem(mi.text);
+                item.setActionCommand(mi.actionCommand);
+                menu.add(item);
+            }
+            refilled.put(pm.name, menu);
+        }
+        // re-registered in the recorded order, which the save and the generated code follow
+        PopupMenuManager.clearAll();
+        refilled.forEach(PopupMenuManager::putMenu);
+    }
+
+    /** Puts {@code c} right after {@code anchor} in {@code parent} (first when null). */
+    private static void place(Container parent, Component c, Component anchor, String constraint, GridBagData gridBag) {
+        if (c.getParent() == parent) {
+            int from = parent.getComponentZOrder(c);
+            int after = anchor == null ? -1 : parent.getComponentZOrder(anchor);
+            parent.setComponentZOrder(c, after < from ? after + 1 : after);
+            return;
+        }
+        if (c.getParent() != null) c.getParent().remove(c);
+        int index = anchor == null ? 0 : parent.getComponentZOrder(anchor) + 1;
+        if (parent.getLayout() instanceof BorderLayout) {
+            parent.add(c, constraint, index);
+        } else {
+            parent.add(c, index);
+        }
+        if (gridBag != null && parent.getLayout() instanceof GridBagLayout gbl) {
+            gbl.setConstraints(c, gridBag.toConstraints());
+        }
+    }
+
+    /** Applies a NODE record: the component's own fields, its place in the parent's layout, and its layout. */
+    private void update(Container c, ProjectCodec.NodeSpec n) {
+        if (c != surface && c instanceof JComponent jc) {
+            // every field is set, null included: a record carries the full state, not a change
+            jc.setName(n.name);
+            jc.setVisible(n.visible);
+            jc.setEnabled(n.enabled == null || n.enabled);
+            if (n.bounds != null) jc.setBounds(n.bounds);
+            jc.setPreferredSize(n.preferredSize);
+            jc.setMinimumSize(n.minimumSize);
+            jc.setMaximumSize(n.maximumSize);
+            jc.setBackground(n.background);
+            jc.setForeground(n.foreground);
+            jc.setFont(n.font);
+            // a spinner cannot hold a null value
+            if (n.text != null || !(jc instanceof JSpinner)) ProjectCodec.SurfaceBuilder.applyText(jc, n.text);
+            jc.setBorder(n.border == null ? null : n.border.toBorder());
+            jc.putClientProperty("savedPopup", n.popupMenuName == null ? null : PopupMenuManager.getMenu(n.popupMenuName));
+            jc.putClientProperty("layoutConstraint", n.layoutConstraint);
+            jc.putClientProperty("positionType",
+                    n.positionType != null ? PositionType.valueOf(n.positionType) : PositionType.ABSOLUTE);
+
+            Container parent = jc.getParent();
+            if (parent != null && parent.getLayout() instanceof BorderLayout bl
+                    && n.layoutConstraint != null && !n.layoutConstraint.equals(bl.getConstraints(jc))) {
+                int z = parent.getComponentZOrder(jc);
+                parent.remove(jc);
+                parent.add(jc, n.layoutConstraint, z);
+            }
+            if (parent != null && n.gridBag != null && parent.getLayout() instanceof GridBagLayout gbl) {
+                gbl.setConstraints(jc, n.gridBag.toConstraints());
+            }
+        }
+        // replacing an equal layout would drop the children's grid-bag constraints
+        if (n.layout != null && !sameLayout(n.layout, LayoutData.fromLayout(c.getLayout()))) {
+            c.setLayout(n.layout.toLayoutManager());
+        }
+    }
+
+    private static boolean sameLayout(LayoutData a, LayoutData b) {
+        return Objects.equals(a.type, b.type) && Objects.equals(a.hgap, b.hgap) && Objects.equals(a.vgap, b.vgap)
+                && Objects.equals(a.alignment, b.alignment) && Objects.equals(a.rows, b.rows) && Objects.equals(a.cols, b.cols);
+    }
+
+    private static Component component(Map<Integer, Component> byId, int id) throws IOException {
+        Component c = byId.get(id);
+        if (c == null) throw new IOException("Unknown component id " + id);
+        return c;
+    }
+
+    private static Container container(Map<Integer, Component> byId, int id) throws IOException {
+        if (component(byId, id) instanceof Container c) return c;
+        throw new IOException("Component " + id + " is not a container");
+    }
+
+    private static Component anchor(Map<Integer, Component> byId, int anchor) throws IOException {
+        return anchor == 0 ? null : component(byId, anchor - 1);
+    }
+
+    /** Passes a subtree on and keeps the node it was read from. */
+    private static final class Capture implements ProjectCodec.Sink {
+        private final ProjectCodec.Sink target;
+        ProjectCodec.NodeSpec node;
+
+        Capture(ProjectCodec.Sink target) {
+            this.target = target;
+        }
+
+        @Override public void popupMenus(List<PopupMenuData> menus) {}
+        @Override public void userCode(String code) {}
+
+        @Override public void open(ProjectCodec.NodeSpec n, int depth) {
+            if (node == null) node = n;
+            if (target != null) target.open(n, depth);
+        }
+
+        @Override public void close(ProjectCodec.NodeSpec n, int depth) {
+            if (target != null) target.close(n, depth);
+        }
+    }
+
+    /* ───────────────────────── files (project-io worker) ───────────────────────── */
+
+    private void drain() {
+        flushScheduled.set(false);
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        for (Object item; (item = queue.poll()) != null; ) {
+            if (item instanceof byte[] payload) {
+                frame(pending, payload);
+                continue;
+            }
+            append(pending);
+            if (item instanceof Rebase r) {
+                rebaseNow(r);
+            } else if (item instanceof Close) {
+                closeNow();
+            }
+        }
+        append(pending);
+
+        if (channel != null && length > COMPACT_BYTES && !compactRequested) {
+            compactRequested = true;
+            SwingUtilities.invokeLater(this::compact);
+        }
+    }
+
+    private static void frame(ByteArrayOutputStream pending, byte[] payload) {
+        try {
+            DataOutputStream o = new DataOutputStream(pending);
+            writeVarint(o, payload.length);
+            o.write(payload);
+            o.writeInt(crc(payload));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);   // in memory; cannot happen
+        }
+    }
+
+    /** One write and one fsync for everything queued since the last drain. */
+    private void append(ByteArrayOutputStream pending) {
+        if (pending.size() == 0) return;
+        if (channel != null) {
+            try {
+                ByteBuffer buf = ByteBuffer.wrap(pending.toByteArray());
+                while (buf.hasRemaining()) channel.write(buf);
+                channel.force(false);
+                length += pending.size();
+            } catch (IOException ex) {
+                stop(ex, "Journal stopped: ");
+            }
+        }
+        pending.reset();
+    }
+
+    private void startNow(Path base, long valid) {
+        try {
+            if (valid >= 0) {
+                channel = FileChannel.open(journalFor(base), StandardOpenOption.WRITE);
+                channel.truncate(valid);
+                channel.position(valid);
+                journalBase = base;
+                length = valid;
+            } else {
+                create(base);
+            }
+        } catch (IOException ex) {
+            stop(ex, "Journal not started: ");
+        }
+    }
+
+    /**
+     * Writes the base, then a new journal for it; a journal left for another base is removed.
+     * If the base cannot be written, journaling pauses until the next rebase succeeds, since
+     * the records that follow would refer to a base that does not exist.
+     */
+    private void rebaseNow(Rebase r) {
+        Path oldBase = journalBase;
+        try {
+            long bytes = ProjectIO.writeAtomically(r.base(), r.snapshot(), r.progress());
+            create(r.base());
+            if (oldBase != null && !oldBase.equals(r.base())) {
+                Files.deleteIfExists(journalFor(oldBase));
+                if (oldBase.startsWith(recoveryBase().getParent())) Files.deleteIfExists(oldBase);
+            }
+            r.done().complete(bytes);
+        } catch (IOException | RuntimeException ex) {
+            closeChannel();
+            r.done().completeExceptionally(ex);
+        }
+    }
+
+    /** A new, empty journal for {@code base}, atomically replacing the old one. */
+    private void create(Path base) throws IOException {
+        Path file = journalFor(base).toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream o = new DataOutputStream(header);
+        long[] stamp = stamp(base);
+        o.writeInt(MAGIC);
+        o.writeLong(stamp[0]);
+        o.writeLong(stamp[1]);
+
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ch.write(ByteBuffer.wrap(header.toByteArray()));
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        closeChannel();
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journalBase = base;
+        length = header.size();
+    }
+
+    private void closeNow() {
+        closeChannel();
+        if (journalBase == null || !journalBase.startsWith(recoveryBase().getParent())) return;
+        try {
+            Files.deleteIfExists(journalFor(journalBase));
+            Files.deleteIfExists(journalBase);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private void stop(Exception ex, String message) {
+        closeChannel();
+        ex.printStackTrace();
+        SwingUtilities.invokeLater(() -> OutputConsole.error(message + ex.getMessage()));
+    }
+
+    /** Back on the EDT: writes the design over the base and starts the journal over. */
+    private void compact() {
+        if (closed) {
+            compactRequested = false;
+            return;
+        }
+        String name = base.getFileName().toString();
+        ProjectCodec.Snapshot snapshot = ProjectCodec.snapshot(surface, userCode.get());
+        rebase(base, snapshot, written -> {}).whenComplete((bytes, err) -> SwingUtilities.invokeLater(() -> {
+            compactRequested = false;
+            if (err != null) {
+                err.printStackTrace();
+                OutputConsole.error("Journal compaction into '" + name + "' failed: " + err.getMessage());
+            } else {
+                OutputConsole.info("Compacted the journal into '" + name + "'");
+            }
+        }));
+    }
+
+    /** Size and modification time of the base, which a journal must match to be replayed; -1s when absent. */
+    private static long[] stamp(Path base) throws IOException {
+        if (!Files.isRegularFile(base)) return new long[]{ -1, -1 };
+        return new long[]{ Files.size(base), Files.getLastModifiedTime(base).toMillis() };
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
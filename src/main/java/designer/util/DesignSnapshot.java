@@ -0,0 +1,205 @@
+package designer.util;
+
+import designer.types.PositionType;
+
+import javax.swing.*;
+import javax.swing.border.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable copy of everything {@link CodeManager} reads from the design surface.
+ * It is captured on the EDT, which is all the UI thread does; the code is then
+ * generated from it on a background thread without touching any live component.
+ * <p>
+ * Nodes compare by identity: an unchanged subtree is reused by the next capture, and
+ * the generator caches its emitted code per node.
+ */
+final class DesignSnapshot
+{
+    final List<Menu> menus;
+    final Node root;
+
+    DesignSnapshot(List<Menu> menus, Node root) {
+        this.menus = menus;
+        this.root = root;
+    }
+
+    /** One registered popup menu and the texts of its items. */
+    record Menu(String name, List<String> items) {}
+
+    /** Border types the generator knows how to emit; anything else is {@code null}. */
+    record BorderSpec(Class<? extends Border> type, Color lineColor, int thickness, Insets insets, String title) {
+        static BorderSpec of(Border b) {
+            if (b instanceof LineBorder lb) return new BorderSpec(LineBorder.class, lb.getLineColor(), lb.getThickness(), null, null);
+            if (b instanceof EmptyBorder eb) return new BorderSpec(EmptyBorder.class, null, 0, eb.getBorderInsets(), null);
+            if (b instanceof EtchedBorder) return new BorderSpec(EtchedBorder.class, null, 0, null, null);
+            if (b instanceof TitledBorder tb) return new BorderSpec(TitledBorder.class, null, 0, null, tb.getTitle());
+            return null;
+        }
+    }
+
+    /** Layout type plus the grid dimensions for {@link GridLayout}. */
+    record LayoutSpec(Class<? extends LayoutManager> type, int rows, int columns) {
+        static LayoutSpec of(LayoutManager lm) {
+            if (lm == null) return null;
+            if (lm instanceof GridLayout g) return new LayoutSpec(GridLayout.class, g.getRows(), g.getColumns());
+            return new LayoutSpec(lm.getClass(), 0, 0);
+        }
+    }
+
+    /** One component and its children. All fields are private copies or immutable values. */
+    static final class Node
+    {
+        final String type;
+        final String name;
+        /** "setText", "setSelectedItem" or "setValue", with its argument; null when nothing is emitted. */
+        final String valueSetter;
+        final String value;
+        final boolean numericValue;
+        final Font font;
+        final boolean autoscrolls;
+        final boolean enabled;
+        final boolean visible;
+        final BorderSpec border;
+        final LayoutSpec layout;
+        final Color background;
+        final Color foreground;
+        final String popupMenuName;
+        final Dimension preferredSize;
+        final Dimension minimumSize;
+        final Dimension maximumSize;
+        /** Null unless the component is absolutely positioned. */
+        final Rectangle bounds;
+        /** Set when the parent uses a GridBagLayout, otherwise {@link #borderConstraint} applies. */
+        final GridBagConstraints gridBag;
+        final Object borderConstraint;
+        final List<Node> children;
+
+        /** The root surface: only its layout and children are emitted. */
+        Node(Container root, List<Node> children) {
+            this.type = root.getClass().getSimpleName();
+            this.name = root.getName();
+            this.valueSetter = null;
+            this.value = null;
+            this.numericValue = false;
+            this.font = null;
+            this.autoscrolls = false;
+            this.enabled = true;
+            this.visible = true;
+            this.border = null;
+            this.layout = LayoutSpec.of(root.getLayout());
+            this.background = root.getBackground();
+            this.foreground = null;
+            this.popupMenuName = null;
+            this.preferredSize = null;
+            this.minimumSize = null;
+            this.maximumSize = null;
+            this.bounds = null;
+            this.gridBag = null;
+            this.borderConstraint = null;
+            this.children = children;
+        }
+
+        /** Copies one child of {@code parent}; {@code popupMenuName} was resolved (and registered) by the caller. */
+        Node(JComponent jc, Container parent, String popupMenuName, List<Node> children) {
+            this.type = jc.getClass().getSimpleName();
+            this.name = jc.getName();
+
+            String setter = null, val = null;
+            boolean numeric = false;
+            if (jc instanceof AbstractButton ab && ab.getText() != null) {
+                setter = "setText"; val = ab.getText();
+            } else if (jc instanceof JLabel lbl && lbl.getText() != null) {
+                setter = "setText"; val = lbl.getText();
+            } else if (jc instanceof javax.swing.text.JTextComponent tc && tc.getText() != null) {
+                setter = "setText"; val = tc.getText();
+            } else if (jc instanceof JComboBox<?> combo) {
+                Object sel = combo.getSelectedItem();
+                if (sel != null) { setter = "setSelectedItem"; val = sel.toString(); }
+            } else if (jc instanceof JSpinner spinner) {
+                Object v = spinner.getValue();
+                if (v != null) { setter = "setValue"; val = v.toString(); numeric = v instanceof Number; }
+            }
+            this.valueSetter = setter;
+            this.value = val;
+            this.numericValue = numeric;
+
+            this.font = jc.getFont();
+            this.autoscrolls = jc.getAutoscrolls();
+            this.enabled = jc.isEnabled();
+            this.visible = jc.isVisible();
+            this.border = BorderSpec.of(jc.getBorder());
+            this.layout = LayoutSpec.of(jc.getLayout());
+            this.background = jc.getBackground();
+            this.foreground = jc.getForeground();
+            this.popupMenuName = popupMenuName;
+            this.preferredSize = jc.getPreferredSize();
+            this.minimumSize = jc.getMinimumSize();
+            this.maximumSize = jc.getMaximumSize();
+
+            PositionType pt = (PositionType) jc.getClientProperty("positionType");
+            this.bounds = pt == null || pt == PositionType.ABSOLUTE ? jc.getBounds() : null;
+
+            // getConstraints hands out a copy
+            this.gridBag = parent.getLayout() instanceof GridBagLayout gbl ? gbl.getConstraints(jc) : null;
+            this.borderConstraint = jc.getClientProperty("layoutConstraint");
+            this.children = children;
+        }
+
+        /** Same values, and the very same child nodes. */
+        boolean sameAs(Node o) {
+            if (children.size() != o.children.size()) return false;
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i) != o.children.get(i)) return false;
+            }
+            return type.equals(o.type)
+                    && Objects.equals(name, o.name)
+                    && Objects.equals(valueSetter, o.valueSetter)
+                    && Objects.equals(value, o.value)
+                    && numericValue == o.numericValue
+                    && Objects.equals(font, o.font)
+                    && autoscrolls == o.autoscrolls
+                    && enabled == o.enabled
+                    && visible == o.visible
+                    && Objects.equals(border, o.border)
+                    && Objects.equals(layout, o.layout)
+                    && Objects.equals(background, o.background)
+                    && Objects.equals(foreground, o.foreground)
+                    && Objects.equals(popupMenuName, o.popupMenuName)
+                    && Objects.equals(preferredSize, o.preferredSize)
+                    && Objects.equals(minimumSize, o.minimumSize)
+                    && Objects.equals(maximumSize, o.maximumSize)
+                    && Objects.equals(bounds, o.bounds)
+                    && sameConstraints(gridBag, o.gridBag)
+                    && Objects.equals(borderConstraint, o.borderConstraint);
+        }
+
+        /** GridBagConstraints has no equals of its own. */
+        private static boolean sameConstraints(GridBagConstraints a, GridBagConstraints b) {
+            if (a == null || b == null) return a == b;
+            return a.gridx == b.gridx && a.gridy == b.gridy
+                    && a.gridwidth == b.gridwidth && a.gridheight == b.gridheight
+                    && a.weightx == b.weightx && a.weighty == b.weighty
+                    && a.anchor == b.anchor && a.fill == b.fill
+                    && a.ipadx == b.ipadx && a.ipady == b.ipady
+                    && Objects.equals(a.insets, b.insets);
+        }
+    }
+
+    /** Copies the popup-menu registry; called on the EDT. */
+    static List<Menu> captureMenus() {
+        List<Menu> menus = new ArrayList<>();
+        for (String name : PopupMenuManager.getMenuNames()) {
+            List<String> items = new ArrayList<>();
+            for (Component mi : PopupMenuManager.getMenu(name).getComponents()) {
+                if (mi instanceof JMenuItem item) items.add(item.getText());
+            }
+            menus.add(new Menu(name, Collections.unmodifiableList(items)));
+        }
+        return List.copyOf(menus);
+    }
+}
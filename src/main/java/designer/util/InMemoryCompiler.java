@@ -0,0 +1,142 @@
+package designer.util;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiles generated sources without touching the disk:
+ * source and class bytes live in memory, and the compiler plus its standard
+ * file manager (which indexes the platform and class path) are reused across runs.
+ */
+public class InMemoryCompiler
+{
+    private static JavaCompiler compiler;
+    private static StandardJavaFileManager standardManager;
+
+    private static synchronized StandardJavaFileManager standardManager() {
+        if (standardManager == null) {
+            compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler == null) {
+                throw new IllegalStateException("No system Java compiler available (running on a JRE?)");
+            }
+            standardManager = compiler.getStandardFileManager(null, Locale.getDefault(), null);
+        }
+        return standardManager;
+    }
+
+    /**
+     * Compile the given sources (class name to source text).
+     *
+     * @return binary class name to class bytes, including nested and anonymous classes
+     * @throws RuntimeException carrying the compiler diagnostics if compilation fails
+     */
+    public static synchronized Map<String, byte[]> compile(Map<String, String> sources, List<String> options) {
+        List<JavaFileObject> units = new ArrayList<>();
+        sources.forEach((name, src) -> units.add(new SourceFile(name, src)));
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        MemoryFileManager fm = new MemoryFileManager(standardManager());
+        boolean success = compiler.getTask(null, fm, diagnostics, options, null, units).call();
+        if (!success) {
+            StringBuilder msg = new StringBuilder("Compilation failed");
+            for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+                if (d.getKind() == Diagnostic.Kind.ERROR) {
+                    msg.append("\n  line ").append(d.getLineNumber()).append(": ")
+                            .append(d.getMessage(Locale.getDefault()));
+                }
+            }
+            throw new RuntimeException(msg.toString());
+        }
+        return fm.classBytes();
+    }
+
+    /* ───── file objects ───── */
+
+    private static URI uriOf(String className, JavaFileObject.Kind kind) {
+        return URI.create("mem:///" + className.replace('.', '/') + kind.extension);
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(uriOf(className, Kind.SOURCE), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ClassFile(String className) {
+            super(uriOf(className, Kind.CLASS), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+
+    /** Routes class output into memory; everything else is served by the shared standard manager. */
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, ClassFile> outputs = new HashMap<>();
+
+        MemoryFileManager(StandardJavaFileManager delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+            if (kind != JavaFileObject.Kind.CLASS) {
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+            ClassFile file = new ClassFile(className);
+            outputs.put(className, file);
+            return file;
+        }
+
+        @Override
+        public void close() {
+            // the delegate is shared across compilations and stays open
+        }
+
+        Map<String, byte[]> classBytes() {
+            Map<String, byte[]> out = new HashMap<>();
+            outputs.forEach((name, file) -> out.put(name, file.bytes.toByteArray()));
+            return out;
+        }
+    }
+
+    /** Defines classes straight from compiled bytes. */
+    public static class ByteArrayClassLoader extends ClassLoader
+    {
+        private final Map<String, byte[]> classes;
+
+        public ByteArrayClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] b = classes.get(name);
+            if (b == null) throw new ClassNotFoundException(name);
+            return defineClass(name, b, 0, b.length);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package designer.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line-based Myers diff. Lines are compared by hash first and only then by content;
+ * the common prefix and suffix are trimmed before the search, so a local change in a
+ * large file costs little more than the change itself.
+ */
+public class LineDiff
+{
+    /** Beyond this many differing lines the middle is replaced as one hunk instead. */
+    private static final int MAX_EDIT_DISTANCE = 2000;
+
+    /** Replace old lines {@code [oldStart, oldEnd)} with new lines {@code [newStart, newEnd)}. */
+    public record Edit(int oldStart, int oldEnd, int newStart, int newEnd) {}
+
+    /** Splits text into lines that keep their '\n', so joining them gives back the exact text. */
+    public static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) lines.add(text.substring(start));
+        return lines;
+    }
+
+    /** Character offset of every line start, plus the total length as the last element. */
+    public static int[] lineOffsets(List<String> lines) {
+        int[] offsets = new int[lines.size() + 1];
+        for (int i = 0; i < lines.size(); i++) {
+            offsets[i + 1] = offsets[i] + lines.get(i).length();
+        }
+        return offsets;
+    }
+
+    public static String join(List<String> lines, int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) sb.append(lines.get(i));
+        return sb.toString();
+    }
+
+    /** Where an old line ends up after the edits; lines inside a replaced hunk map to its start. */
+    public static int mapLine(List<Edit> edits, int oldLine) {
+        int shift = 0;
+        for (Edit e : edits) {
+            if (oldLine < e.oldStart()) break;
+            if (oldLine < e.oldEnd()) return e.newStart();
+            shift += (e.newEnd() - e.newStart()) - (e.oldEnd() - e.oldStart());
+        }
+        return oldLine + shift;
+    }
+
+    /** Minimal hunks turning {@code a} into {@code b}, in ascending order. */
+    public static List<Edit> diff(List<String> a, List<String> b) {
+        int[] ha = hashes(a), hb = hashes(b);
+
+        int prefix = 0;
+        int max = Math.min(a.size(), b.size());
+        while (prefix < max && same(a, ha, prefix, b, hb, prefix)) prefix++;
+        int suffix = 0;
+        while (suffix < max - prefix
+                && same(a, ha, a.size() - 1 - suffix, b, hb, b.size() - 1 - suffix)) suffix++;
+
+        int n = a.size() - prefix - suffix;
+        int m = b.size() - prefix - suffix;
+        List<Edit> edits = new ArrayList<>();
+        if (n == 0 && m == 0) return edits;
+        if (n == 0 || m == 0) {
+            edits.add(new Edit(prefix, prefix + n, prefix, prefix + m));
+            return edits;
+        }
+
+        // forward Myers; trace.get(d) holds V after step d, for diagonals -d..d
+        int off = n + m;
+        int[] v = new int[2 * off + 2];
+        List<int[]> trace = new ArrayList<>();
+        int found = -1;
+        for (int d = 0; d <= Math.min(n + m, MAX_EDIT_DISTANCE) && found < 0; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && v[off + k - 1] < v[off + k + 1]))
+                        ? v[off + k + 1]
+                        : v[off + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && same(a, ha, prefix + x, b, hb, prefix + y)) {
+                    x++;
+                    y++;
+                }
+                v[off + k] = x;
+                if (x >= n && y >= m) found = d;
+            }
+            int[] snap = new int[2 * d + 1];
+            System.arraycopy(v, off - d, snap, 0, snap.length);
+            trace.add(snap);
+        }
+        if (found < 0) {
+            edits.add(new Edit(prefix, prefix + n, prefix, prefix + m));
+            return edits;
+        }
+
+        // walk back collecting the diagonal runs (matched lines), last to first
+        List<int[]> snakes = new ArrayList<>();
+        int x = n, y = m;
+        for (int d = found; d > 0; d--) {
+            int[] prev = trace.get(d - 1);
+            int k = x - y;
+            boolean down = k == -d || (k != d && at(prev, d - 1, k - 1) < at(prev, d - 1, k + 1));
+            int prevK = down ? k + 1 : k - 1;
+            int prevX = at(prev, d - 1, prevK);
+            int prevY = prevX - prevK;
+            int startX = down ? prevX : prevX + 1;
+            int startY = down ? prevY + 1 : prevY;
+            snakes.add(new int[]{ startX, startY, x - startX });
+            x = prevX;
+            y = prevY;
+        }
+        snakes.add(new int[]{ 0, 0, x });
+
+        // the gaps between matched runs are the hunks
+        int ox = 0, oy = 0;
+        for (int i = snakes.size() - 1; i >= 0; i--) {
+            int[] s = snakes.get(i);
+            if (s[2] == 0) continue; // empty run: neighbouring hunks merge into one
+            if (s[0] > ox || s[1] > oy) {
+                edits.add(new Edit(prefix + ox, prefix + s[0], prefix + oy, prefix + s[1]));
+            }
+            ox = s[0] + s[2];
+            oy = s[1] + s[2];
+        }
+        if (ox < n || oy < m) {
+            edits.add(new Edit(prefix + ox, prefix + n, prefix + oy, prefix + m));
+        }
+        return edits;
+    }
+
+    private static int at(int[] snap, int d, int k) {
+        return snap[k + d];
+    }
+
+    private static int[] hashes(List<String> lines) {
+        int[] h = new int[lines.size()];
+        for (int i = 0; i < h.length; i++) h[i] = lines.get(i).hashCode();
+        return h;
+    }
+
+    private static boolean same(List<String> a, int[] ha, int i, List<String> b, int[] hb, int j) {
+        return ha[i] == hb[j] && a.get(i).equals(b.get(j));
+    }
+}
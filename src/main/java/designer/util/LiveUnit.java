@@ -0,0 +1,18 @@
+package designer.util;
+
+import javax.swing.*;
+import java.util.Map;
+
+/**
+ * Stable contract between the separately compiled generated-layout class and the
+ * user-code class, so either can be recompiled without touching the other.
+ */
+public interface LiveUnit
+{
+    /**
+     * @param panel the root panel to build into
+     * @param vars  variables declared by the layout, by name; the layout unit fills it
+     *              and the user-code unit reads its locals back out of it
+     */
+    void apply(JPanel panel, Map<String, Object> vars) throws Exception;
+}
@@ -0,0 +1,123 @@
+package designer.util;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Tracks every class loader created for a Run, so loaders whose classes stay
+ * reachable (typically through listeners that user code left on the live panel)
+ * are noticed instead of silently growing Metaspace.
+ * <p>
+ * A phantom reference per loader tells us when it was really collected; a weak
+ * reference lets us still identify its classes while it is alive. Before each run
+ * the previous loaders are retired and their listeners are stripped from the panel.
+ */
+public class LoaderPool
+{
+    /** Runs a retired loader may survive before it is reported as a likely leak. */
+    private static final int LEAK_AGE = 5;
+
+    private static final ReferenceQueue<ClassLoader> QUEUE = new ReferenceQueue<>();
+    private static final Map<Reference<? extends ClassLoader>, Tracked> TRACKED = new HashMap<>();
+    private static int run = 0;
+
+    private static final class Tracked {
+        final WeakReference<ClassLoader> loader;
+        final int createdRun;
+        int retiredRun = -1;
+
+        Tracked(ClassLoader loader, int createdRun) {
+            this.loader = new WeakReference<>(loader);
+            this.createdRun = createdRun;
+        }
+    }
+
+    /** A new loader for one run's compiled classes, tracked until it is garbage collected. */
+    public static synchronized ClassLoader newLoader(Map<String, byte[]> classes, ClassLoader parent) {
+        expunge();
+        ClassLoader loader = new InMemoryCompiler.ByteArrayClassLoader(classes, parent);
+        TRACKED.put(new PhantomReference<>(loader, QUEUE), new Tracked(loader, ++run));
+        return loader;
+    }
+
+    /**
+     * Retire all loaders of earlier runs: detach any listener they installed on {@code panel}
+     * (the only thing that outlives a run, since the panel's children are rebuilt), then drop
+     * the entries of loaders that have already been collected.
+     */
+    public static synchronized void retire(Component panel) {
+        Set<ClassLoader> stale = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Tracked t : TRACKED.values()) {
+            if (t.retiredRun < 0) t.retiredRun = run;
+            ClassLoader l = t.loader.get();
+            if (l != null) stale.add(l);
+        }
+        if (!stale.isEmpty()) {
+            detachListeners(panel, stale);
+        }
+        expunge();
+    }
+
+    private static void detachListeners(Component c, Set<ClassLoader> stale) {
+        for (var l : c.getMouseListeners())         if (stale.contains(l.getClass().getClassLoader())) c.removeMouseListener(l);
+        for (var l : c.getMouseMotionListeners())   if (stale.contains(l.getClass().getClassLoader())) c.removeMouseMotionListener(l);
+        for (var l : c.getMouseWheelListeners())    if (stale.contains(l.getClass().getClassLoader())) c.removeMouseWheelListener(l);
+        for (var l : c.getKeyListeners())           if (stale.contains(l.getClass().getClassLoader())) c.removeKeyListener(l);
+        for (var l : c.getFocusListeners())         if (stale.contains(l.getClass().getClassLoader())) c.removeFocusListener(l);
+        for (var l : c.getComponentListeners())     if (stale.contains(l.getClass().getClassLoader())) c.removeComponentListener(l);
+        for (var l : c.getHierarchyListeners())     if (stale.contains(l.getClass().getClassLoader())) c.removeHierarchyListener(l);
+        for (var l : c.getPropertyChangeListeners()) if (stale.contains(l.getClass().getClassLoader())) c.removePropertyChangeListener(l);
+        if (c instanceof Container cont) {
+            for (var l : cont.getContainerListeners()) if (stale.contains(l.getClass().getClassLoader())) cont.removeContainerListener(l);
+        }
+    }
+
+    private static void expunge() {
+        Reference<? extends ClassLoader> ref;
+        while ((ref = QUEUE.poll()) != null) {
+            TRACKED.remove(ref);
+            ref.clear();
+        }
+    }
+
+    /** Loaders created by this pool that have not been collected yet. */
+    public static synchronized int liveCount() {
+        expunge();
+        return TRACKED.size();
+    }
+
+    /** Retired loaders that survived {@value #LEAK_AGE} or more runs: something still references them. */
+    public static synchronized int suspectedLeaks() {
+        expunge();
+        int leaks = 0;
+        for (Tracked t : TRACKED.values()) {
+            if (t.retiredRun >= 0 && run - t.createdRun >= LEAK_AGE && t.loader.get() != null) leaks++;
+        }
+        return leaks;
+    }
+
+    /** Current Metaspace usage in bytes, or -1 if the JVM does not expose that pool. */
+    public static long metaspaceUsed() {
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+        for (MemoryPoolMXBean pool : pools) {
+            if ("Metaspace".equals(pool.getName())) return pool.getUsage().getUsed();
+        }
+        return -1;
+    }
+
+    /** One-line status for the output console. */
+    public static String describe() {
+        long meta = metaspaceUsed();
+        int leaks = suspectedLeaks();
+        return "Class loaders: " + liveCount() + " live"
+                + (leaks > 0 ? ", " + leaks + " retired but still reachable (possible leak)" : "")
+                + (meta >= 0 ? String.format(", Metaspace %.1f MB", meta / (1024.0 * 1024.0)) : "");
+    }
+}
@@ -9,15 +9,19 @@ import java.util.Set;
 public class PopupMenuManager {
     // preserve insertion order
     private static final Map<String, JPopupMenu> MENUS = new LinkedHashMap<>();
+    // bumped on every registry change so cached generated code can detect stale menu names
+    private static int version = 0;
 
     /** Register a new or replaced menu under this name */
     public static void putMenu(String name, JPopupMenu menu) {
         MENUS.put(name, menu);
+        version++;
     }
 
     /** Remove a menu by name */
     public static void removeMenu(String name) {
         MENUS.remove(name);
+        version++;
     }
 
     /** Names of all menus, in creation order */
@@ -32,6 +36,12 @@ public class PopupMenuManager {
 
     public static void clearAll() {
         MENUS.clear();
+        version++;
+    }
+
+    /** Changes whenever a menu is added, replaced or removed */
+    public static int getVersion() {
+        return version;
     }
 
     public static String menuNameOf(JPopupMenu menu) {
@@ -0,0 +1,141 @@
+package designer.util;
+
+import designer.model.ComponentData;
+import designer.types.PositionType;
+
+import javax.swing.*;
+import java.awt.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds a preview straight from a {@link ComponentData} snapshot, without generating
+ * or compiling any source. It applies the same properties, in the same order, as the
+ * code emitted by {@link CodeManager#generateCode}. Constructors and the type-specific
+ * value setters are resolved once per class into cached {@link MethodHandle}s.
+ */
+public class PreviewInterpreter
+{
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final Map<String, Class<?>> CLASSES = new ConcurrentHashMap<>();
+
+    private static final ClassValue<Ops> OPS = new ClassValue<>() {
+        @Override
+        protected Ops computeValue(Class<?> type) {
+            return Ops.resolve(type);
+        }
+    };
+
+    /** How the snapshot's "text" maps onto a component, mirroring the generator. */
+    private enum ValueKind { TEXT, SELECTED_ITEM, SPINNER_VALUE, NONE }
+
+    /** Pre-resolved handles for one component class. */
+    private record Ops(MethodHandle constructor, MethodHandle valueSetter, ValueKind kind) {
+        static Ops resolve(Class<?> type) {
+            try {
+                MethodHandle ctor = LOOKUP.findConstructor(type, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(JComponent.class));
+                ValueKind kind;
+                MethodHandle setter;
+                if (AbstractButton.class.isAssignableFrom(type) || JLabel.class.isAssignableFrom(type)
+                        || javax.swing.text.JTextComponent.class.isAssignableFrom(type)) {
+                    kind = ValueKind.TEXT;
+                    setter = LOOKUP.findVirtual(type, "setText", MethodType.methodType(void.class, String.class))
+                            .asType(MethodType.methodType(void.class, JComponent.class, Object.class));
+                } else if (JComboBox.class.isAssignableFrom(type)) {
+                    kind = ValueKind.SELECTED_ITEM;
+                    setter = LOOKUP.findVirtual(type, "setSelectedItem", MethodType.methodType(void.class, Object.class))
+                            .asType(MethodType.methodType(void.class, JComponent.class, Object.class));
+                } else if (JSpinner.class.isAssignableFrom(type)) {
+                    kind = ValueKind.SPINNER_VALUE;
+                    setter = LOOKUP.findVirtual(type, "setValue", MethodType.methodType(void.class, Object.class))
+                            .asType(MethodType.methodType(void.class, JComponent.class, Object.class));
+                } else {
+                    kind = ValueKind.NONE;
+                    setter = null;
+                }
+                return new Ops(ctor, setter, kind);
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalArgumentException("Cannot instantiate " + type.getName(), ex);
+            }
+        }
+    }
+
+    /** Replace the panel's content with the snapshot's children. */
+    public static void apply(JPanel panel, ComponentData root) throws Throwable {
+        panel.removeAll();
+        panel.setLayout(root.layout.toLayoutManager());
+        build(panel, root);
+        panel.revalidate();
+        panel.repaint();
+    }
+
+    private static void build(Container parent, ComponentData data) throws Throwable {
+        for (ComponentData cd : data.children) {
+            Class<?> type = CLASSES.computeIfAbsent(cd.className, PreviewInterpreter::loadClass);
+            Ops ops = OPS.get(type);
+            JComponent comp = (JComponent) ops.constructor().invokeExact();
+
+            comp.setName(cd.name);
+            if (cd.text != null && ops.kind() != ValueKind.NONE) {
+                ops.valueSetter().invokeExact(comp, valueOf(cd.text, ops.kind()));
+            }
+            comp.setFont(cd.font.toFont());
+            if (cd.enabled != null && !cd.enabled) comp.setEnabled(false);
+            if (cd.border != null) comp.setBorder(cd.border.toBorder());
+            comp.setLayout(cd.layout.toLayoutManager());
+            comp.setBackground(cd.backgroundColor.toColor());
+            comp.setForeground(cd.foregroundColor.toColor());
+            if (!cd.visible) comp.setVisible(false);
+            if (cd.popupMenuName != null) {
+                comp.setComponentPopupMenu(PopupMenuManager.getMenu(cd.popupMenuName));
+            }
+            comp.setPreferredSize(cd.preferredSize.toDimension());
+            comp.setMinimumSize(cd.minimumSize.toDimension());
+            comp.setMaximumSize(cd.maximumSize.toDimension());
+            if (cd.positionType == null || PositionType.valueOf(cd.positionType) == PositionType.ABSOLUTE) {
+                comp.setBounds(cd.bounds.toRectangle());
+            }
+
+            LayoutManager lm = parent.getLayout();
+            if (lm instanceof GridBagLayout) {
+                parent.add(comp, cd.gridBag != null ? cd.gridBag.toConstraints() : new GridBagConstraints());
+            } else if (lm instanceof BorderLayout) {
+                parent.add(comp, cd.layoutConstraint != null ? cd.layoutConstraint : BorderLayout.CENTER);
+            } else {
+                parent.add(comp);
+            }
+
+            // components that build their own children (spinners, combos, ...) already have them
+            if (!cd.children.isEmpty() && comp.getComponentCount() == 0) {
+                build(comp, cd);
+            }
+        }
+    }
+
+    private static Object valueOf(String text, ValueKind kind) {
+        if (kind == ValueKind.SPINNER_VALUE) {
+            try {
+                return Integer.valueOf(text);
+            } catch (NumberFormatException ex) {
+                try {
+                    return Double.valueOf(text);
+                } catch (NumberFormatException ignored) {
+                    return text;
+                }
+            }
+        }
+        return text;
+    }
+
+    private static Class<?> loadClass(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalArgumentException("Unknown component class " + name, ex);
+        }
+    }
+}
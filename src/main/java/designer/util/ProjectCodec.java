@@ -0,0 +1,745 @@
+package designer.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import designer.model.*;
+import designer.types.PositionType;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static designer.util.Static.mapper;
+
+/**
+ * Token-streaming reader and writer for project files: one JSON object with "popupMenus",
+ * "userCode" and a "root" component, which has the fields of {@link NodeSpec} and its
+ * "children". Saving writes a {@link Snapshot} of the live components. Loading hands each
+ * component to a {@link Sink} as soon as its own fields are read, so nothing holds the whole
+ * tree in {@link ComponentData} form.
+ * <p>
+ * Popup menus are written first; in older files, where they come last, references to them
+ * are resolved once the whole file has been read.
+ */
+public class ProjectCodec
+{
+    /** Receives a project in file order. {@link #open}/{@link #close} nest like the component tree. */
+    public interface Sink {
+        void popupMenus(List<PopupMenuData> menus);
+        void userCode(String code);
+        /** A component's own fields are known; its children follow. Depth 0 is the root surface. */
+        void open(NodeSpec node, int depth);
+        /** All children of the component have been opened and closed. */
+        void close(NodeSpec node, int depth);
+        /** The end of the file. */
+        default void finish() {}
+    }
+
+    /**
+     * The fields of one component, already as AWT values. Only border, layout and grid-bag
+     * constraints use their model classes, for the conversions those already implement.
+     */
+    public static final class NodeSpec {
+        public String className, name, text;
+        public boolean visible;
+        public Boolean enabled;
+        public Rectangle bounds;
+        public Dimension preferredSize, minimumSize, maximumSize;
+        public Color background, foreground;
+        public Font font;
+        public BorderData border;
+        public LayoutData layout;
+        public String layoutConstraint, positionType, popupMenuName;
+        public GridBagData gridBag;
+    }
+
+    /* ───────────────────────── writing ───────────────────────── */
+
+    /**
+     * A project copied out of the live components, on the EDT, so that it can be written from
+     * any thread. Nodes are numbered in file order; the number is handed to the writers'
+     * progress callback.
+     */
+    public static final class Snapshot {
+        final List<PopupMenuData> popupMenus;
+        final String userCode;
+        final Tree root;
+        private final int size;
+
+        private Snapshot(Container root, String userCode) {
+            this.popupMenus = popupMenuData();
+            this.userCode = userCode;
+            int[] counter = { 0 };
+            this.root = tree(root, counter);
+            this.size = counter[0];
+        }
+
+        /** Nodes in the snapshot, the root included. */
+        public int size() {
+            return size;
+        }
+    }
+
+    record Tree(NodeSpec node, int index, List<Tree> children) {}
+
+    /** The registered popup menus as model data. EDT only. */
+    static List<PopupMenuData> popupMenuData() {
+        List<PopupMenuData> menus = new ArrayList<>();
+        for (String name : PopupMenuManager.getMenuNames()) {
+            PopupMenuData pm = new PopupMenuData();
+            pm.name = name;
+            pm.items = new ArrayList<>();
+            for (Component c : PopupMenuManager.getMenu(name).getComponents()) {
+                if (c instanceof JMenuItem mi) {
+                    MenuItemData item = new MenuItemData();
+                    item.text = mi.getText();
+                    item.actionCommand = mi.getActionCommand();
+                    pm.items.add(item);
+                }
+            }
+            menus.add(pm);
+        }
+        return menus;
+    }
+
+    /** Describes {@code cont} and everything below it, numbering the nodes in pre-order from {@code counter[0]}. EDT only. */
+    static Tree tree(Container cont, int[] counter) {
+        Tree t = new Tree(describe(cont), counter[0]++, new ArrayList<>());
+        for (Component c : cont.getComponents()) {
+            if (c instanceof Container child) t.children().add(tree(child, counter));
+        }
+        return t;
+    }
+
+    /** EDT only. */
+    public static Snapshot snapshot(Container root, String userCode) {
+        return new Snapshot(root, userCode);
+    }
+
+    /**
+     * Writes the snapshot and flushes, leaving {@code out} open. {@code progress} receives the
+     * number of nodes written so far after each one.
+     */
+    public static void write(OutputStream out, boolean binary, Snapshot s, IntConsumer progress) throws IOException {
+        if (binary) {
+            BinaryProjectCodec.write(out, s, progress);
+            return;
+        }
+        try (JsonGenerator g = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            g.useDefaultPrettyPrinter();
+            g.writeStartObject();
+            writePopupMenus(g, s.popupMenus);
+            g.writeStringField("userCode", s.userCode);
+            g.writeFieldName("root");
+            writeComponent(g, s.root, progress);
+            g.writeEndObject();
+        }
+    }
+
+    private static void writePopupMenus(JsonGenerator g, List<PopupMenuData> menus) throws IOException {
+        g.writeArrayFieldStart("popupMenus");
+        for (PopupMenuData pm : menus) {
+            g.writeStartObject();
+            g.writeStringField("name", pm.name);
+            g.writeArrayFieldStart("items");
+            for (MenuItemData mi : pm.items) {
+                g.writeStartObject();
+                g.writeStringField("text", mi.text);
+                g.writeStringField("actionCommand", mi.actionCommand);
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+    }
+
+    private static void writeComponent(JsonGenerator g, Tree t, IntConsumer progress) throws IOException {
+        NodeSpec n = t.node();
+        g.writeStartObject();
+        g.writeStringField("className", n.className);
+        writeStringIfSet(g, "name", n.name);
+        writeStringIfSet(g, "text", n.text);
+        g.writeBooleanField("visible", n.visible);
+        if (n.enabled != null) g.writeBooleanField("enabled", n.enabled);
+
+        if (n.bounds != null) {
+            g.writeObjectFieldStart("bounds");
+            g.writeNumberField("x", n.bounds.x);
+            g.writeNumberField("y", n.bounds.y);
+            g.writeNumberField("width", n.bounds.width);
+            g.writeNumberField("height", n.bounds.height);
+            g.writeEndObject();
+        }
+        writeSize(g, "preferredSize", n.preferredSize);
+        writeSize(g, "minimumSize", n.minimumSize);
+        writeSize(g, "maximumSize", n.maximumSize);
+        writeColor(g, "backgroundColor", n.background);
+        writeColor(g, "foregroundColor", n.foreground);
+
+        if (n.font != null) {
+            g.writeObjectFieldStart("font");
+            g.writeStringField("name", n.font.getName());
+            g.writeNumberField("style", n.font.getStyle());
+            g.writeNumberField("size", n.font.getSize());
+            g.writeEndObject();
+        }
+        if (n.border != null) {
+            g.writeFieldName("border");
+            writeBorder(g, n.border);
+        }
+        writeStringIfSet(g, "layoutConstraint", n.layoutConstraint);
+        writeStringIfSet(g, "positionType", n.positionType);
+        if (n.gridBag != null) writeGridBag(g, n.gridBag);
+        writeStringIfSet(g, "popupMenuName", n.popupMenuName);
+        writeLayout(g, n.layout);
+
+        progress.accept(t.index() + 1);
+
+        g.writeArrayFieldStart("children");
+        for (Tree child : t.children()) writeComponent(g, child, progress);
+        g.writeEndArray();
+        g.writeEndObject();
+    }
+
+    /**
+     * What a project file keeps of one component: the same fields as
+     * {@link ModelBuilder#snapshot}, straight from the component.
+     */
+    static NodeSpec describe(Container cont) {
+        NodeSpec n = new NodeSpec();
+        n.className = cont.getClass().getName();
+        n.layout = LayoutData.fromLayout(cont.getLayout());
+        if (!(cont instanceof JComponent jc)) return n;
+
+        n.name = jc.getName();
+        n.text = textOf(jc);
+        n.visible = jc.isVisible();
+        n.enabled = jc.isEnabled();
+        n.bounds = jc.getBounds();
+        n.preferredSize = jc.getPreferredSize();
+        n.minimumSize = jc.getMinimumSize();
+        n.maximumSize = jc.getMaximumSize();
+        n.background = jc.getBackground();
+        n.foreground = jc.getForeground();
+        n.font = jc.getFont();
+        n.border = BorderData.fromBorder(jc.getBorder());
+
+        Object cons = jc.getClientProperty("layoutConstraint");
+        if (cons != null) n.layoutConstraint = cons.toString();
+        Object pos = jc.getClientProperty("positionType");
+        if (pos != null) n.positionType = pos.toString();
+        if (jc.getParent() != null && jc.getParent().getLayout() instanceof GridBagLayout gbl) {
+            n.gridBag = new GridBagData(gbl.getConstraints(jc));
+        }
+
+        JPopupMenu pm = jc.getComponentPopupMenu();
+        if (pm == null && jc.getClientProperty("savedPopup") instanceof JPopupMenu saved) {
+            pm = saved;
+        }
+        n.popupMenuName = pm == null ? null : PopupMenuManager.menuNameOf(pm);
+        return n;
+    }
+
+    static String textOf(JComponent jc) {
+        if (jc instanceof AbstractButton ab) return ab.getText();
+        if (jc instanceof JLabel lbl) return lbl.getText();
+        if (jc instanceof javax.swing.text.JTextComponent tc) return tc.getText();
+        if (jc instanceof JComboBox<?> combo) return combo.getSelectedItem() == null ? null : combo.getSelectedItem().toString();
+        if (jc instanceof JSpinner spinner) return spinner.getValue() == null ? null : spinner.getValue().toString();
+        return null;
+    }
+
+    private static void writeStringIfSet(JsonGenerator g, String field, String value) throws IOException {
+        if (value != null) g.writeStringField(field, value);
+    }
+
+    private static void writeSize(JsonGenerator g, String field, Dimension d) throws IOException {
+        if (d == null) return;
+        g.writeObjectFieldStart(field);
+        g.writeNumberField("width", d.width);
+        g.writeNumberField("height", d.height);
+        g.writeEndObject();
+    }
+
+    private static void writeColor(JsonGenerator g, String field, Color c) throws IOException {
+        if (c == null) return;
+        g.writeObjectFieldStart(field);
+        g.writeNumberField("r", c.getRed());
+        g.writeNumberField("g", c.getGreen());
+        g.writeNumberField("b", c.getBlue());
+        g.writeNumberField("a", c.getAlpha());
+        g.writeEndObject();
+    }
+
+    private static void writeBorder(JsonGenerator g, BorderData bd) throws IOException {
+        g.writeStartObject();
+        g.writeStringField("type", bd.type);
+        g.writeObjectFieldStart("properties");
+        for (Map.Entry<String, Object> e : bd.properties.entrySet()) {
+            g.writeFieldName(e.getKey());
+            Object v = e.getValue();
+            if (v instanceof BorderData nested) writeBorder(g, nested);
+            else if (v instanceof Integer i) g.writeNumber(i);
+            else if (v instanceof String s) g.writeString(s);
+            else g.writeNull();
+        }
+        g.writeEndObject();
+        g.writeEndObject();
+    }
+
+    private static void writeLayout(JsonGenerator g, LayoutData ld) throws IOException {
+        g.writeObjectFieldStart("layout");
+        g.writeStringField("type", ld.type);
+        if (ld.hgap != null) g.writeNumberField("hgap", ld.hgap);
+        if (ld.vgap != null) g.writeNumberField("vgap", ld.vgap);
+        if (ld.alignment != null) g.writeNumberField("alignment", ld.alignment);
+        if (ld.rows != null) g.writeNumberField("rows", ld.rows);
+        if (ld.cols != null) g.writeNumberField("cols", ld.cols);
+        g.writeEndObject();
+    }
+
+    private static void writeGridBag(JsonGenerator g, GridBagData c) throws IOException {
+        g.writeObjectFieldStart("gridBag");
+        g.writeNumberField("gridx", c.gridx);
+        g.writeNumberField("gridy", c.gridy);
+        g.writeNumberField("gridwidth", c.gridwidth);
+        g.writeNumberField("gridheight", c.gridheight);
+        g.writeNumberField("weightx", c.weightx);
+        g.writeNumberField("weighty", c.weighty);
+        g.writeNumberField("anchor", c.anchor);
+        g.writeNumberField("fill", c.fill);
+        g.writeNumberField("ipadx", c.ipadx);
+        g.writeNumberField("ipady", c.ipady);
+        if (c.insets != null) {
+            g.writeFieldName("insets");
+            g.writeArray(c.insets, 0, c.insets.length);
+        }
+        g.writeEndObject();
+    }
+
+    /* ───────────────────────── reading ───────────────────────── */
+
+    public static void read(InputStream in, boolean binary, Sink sink) throws IOException {
+        if (binary) {
+            BinaryProjectCodec.read(in, sink);
+            return;
+        }
+        try (JsonParser p = mapper.getFactory().createParser(in)) {
+            read(p, sink);
+        }
+    }
+
+    public static void read(JsonParser p, Sink sink) throws IOException {
+        expect(p, p.nextToken(), JsonToken.START_OBJECT);
+        String field;
+        while ((field = p.nextFieldName()) != null) {
+            JsonToken t = p.nextToken();
+            switch (field) {
+                case "userCode" -> sink.userCode(t == JsonToken.VALUE_NULL ? "" : p.getText());
+                case "popupMenus" -> sink.popupMenus(t == JsonToken.VALUE_NULL ? List.of() : readPopupMenus(p));
+                case "root" -> {
+                    if (t != JsonToken.VALUE_NULL) readComponent(p, sink, 0);
+                }
+                default -> p.skipChildren();
+            }
+        }
+        sink.finish();
+    }
+
+    private static List<PopupMenuData> readPopupMenus(JsonParser p) throws IOException {
+        expect(p, p.currentToken(), JsonToken.START_ARRAY);
+        List<PopupMenuData> menus = new ArrayList<>();
+        while (p.nextToken() == JsonToken.START_OBJECT) {
+            PopupMenuData pm = new PopupMenuData();
+            pm.items = new ArrayList<>();
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                JsonToken t = p.nextToken();
+                if (field.equals("name")) {
+                    pm.name = p.getValueAsString();
+                } else if (field.equals("items") && t == JsonToken.START_ARRAY) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        MenuItemData mi = new MenuItemData();
+                        String f;
+                        while ((f = p.nextFieldName()) != null) {
+                            p.nextToken();
+                            if (f.equals("text")) mi.text = p.getValueAsString();
+                            else if (f.equals("actionCommand")) mi.actionCommand = p.getValueAsString();
+                            else p.skipChildren();
+                        }
+                        pm.items.add(mi);
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+            menus.add(pm);
+        }
+        return menus;
+    }
+
+    /**
+     * Reads one component object, the parser being on its START_OBJECT. The node is opened
+     * when its children start (they come last in what we and Jackson write); a file that
+     * lists children before the node's own fields has them buffered and replayed instead.
+     */
+    private static void readComponent(JsonParser p, Sink sink, int depth) throws IOException {
+        expect(p, p.currentToken(), JsonToken.START_OBJECT);
+        NodeSpec n = new NodeSpec();
+        boolean opened = false;
+        JsonNode buffered = null;
+        String field;
+        while ((field = p.nextFieldName()) != null) {
+            JsonToken t = p.nextToken();
+            if (t == JsonToken.VALUE_NULL) continue;
+            switch (field) {
+                case "className"        -> n.className = p.getText();
+                case "name"             -> n.name = p.getText();
+                case "text"             -> n.text = p.getText();
+                case "visible"          -> n.visible = p.getBooleanValue();
+                case "enabled"          -> n.enabled = p.getBooleanValue();
+                case "bounds"           -> n.bounds = readRectangle(p);
+                case "preferredSize"    -> n.preferredSize = readSize(p);
+                case "minimumSize"      -> n.minimumSize = readSize(p);
+                case "maximumSize"      -> n.maximumSize = readSize(p);
+                case "backgroundColor"  -> n.background = readColor(p);
+                case "foregroundColor"  -> n.foreground = readColor(p);
+                case "font"             -> n.font = readFont(p);
+                case "border"           -> n.border = readBorder(p);
+                case "layout"           -> n.layout = readLayout(p);
+                case "layoutConstraint" -> n.layoutConstraint = p.getText();
+                case "positionType"     -> n.positionType = p.getText();
+                case "gridBag"          -> n.gridBag = readGridBag(p);
+                case "popupMenuName"    -> n.popupMenuName = p.getText();
+                case "children" -> {
+                    if (n.className == null && depth > 0) {
+                        buffered = p.readValueAsTree();
+                        break;
+                    }
+                    sink.open(n, depth);
+                    opened = true;
+                    while (p.nextToken() == JsonToken.START_OBJECT) readComponent(p, sink, depth + 1);
+                }
+                default -> p.skipChildren();
+            }
+        }
+        if (!opened) {
+            sink.open(n, depth);
+            if (buffered != null) {
+                try (JsonParser replay = mapper.treeAsTokens(buffered)) {
+                    replay.nextToken();
+                    while (replay.nextToken() == JsonToken.START_OBJECT) readComponent(replay, sink, depth + 1);
+                }
+            }
+        }
+        sink.close(n, depth);
+    }
+
+    private static Rectangle readRectangle(JsonParser p) throws IOException {
+        Rectangle r = new Rectangle();
+        String f;
+        while ((f = p.nextFieldName()) != null) {
+            p.nextToken();
+            switch (f) {
+                case "x"      -> r.x = p.getIntValue();
+                case "y"      -> r.y = p.getIntValue();
+                case "width"  -> r.width = p.getIntValue();
+                case "height" -> r.height = p.getIntValue();
+                default       -> p.skipChildren();
+            }
+        }
+        return r;
+    }
+
+    private static Dimension readSize(JsonParser p) throws IOException {
+        Dimension d = new Dimension();
+        String f;
+        while ((f = p.nextFieldName()) != null) {
+            p.nextToken();
+            switch (f) {
+                case "width"  -> d.width = p.getIntValue();
+                case "height" -> d.height = p.getIntValue();
+                default       -> p.skipChildren();
+            }
+        }
+        return d;
+    }
+
+    private static Color readColor(JsonParser p) throws IOException {
+        int r = 0, g = 0, b = 0, a = 0;
+        String f;
+        while ((f = p.nextFieldName()) != null) {
+            p.nextToken();
+            switch (f) {
+                case "r" -> r = p.getIntValue();
+                case "g" -> g = p.getIntValue();
+                case "b" -> b = p.getIntValue();
+                case "a" -> a = p.getIntValue();
+                default  -> p.skipChildren();
+            }
+        }
+        return new Color(r, g, b, a);
+    }
+
+    private static Font readFont(JsonParser p) throws IOException {
+        String name = null;
+        int style = 0, size = 0;
+        String f;
+        while ((f = p.nextFieldName()) != null) {
+            p.nextToken();
+            switch (f) {
+                case "name"  -> name = p.getValueAsString();
+                case "style" -> style = p.getIntValue();
+                case "size"  -> size = p.getIntValue();
+                default      -> p.skipChildren();
+            }
+        }
+        return new Font(name, style, size);
+    }
+
+    /** Nested borders (CompoundBorder) come back as {@link BorderData}, so they survive the round trip. */
+    private static BorderData readBorder(JsonParser p) throws IOException {
+        BorderData bd = new BorderData();
+        bd.properties = new HashMap<>();
+        String f;
+        while ((f = p.nextFieldName()) != null) {
+            JsonToken t = p.nextToken();
+            if (f.equals("type")) {
+                bd.type = p.getValueAsString();
+            } else if (f.equals("properties") && t == JsonToken.START_OBJECT) {
+                String key;
+                while ((key = p.nextFieldName()) != null) {
+                    JsonToken v = p.nextToken();
+                    bd.properties.put(key, switch (v) {
+                        case START_OBJECT -> readBorder(p);
+                        case VALUE_NUMBER_INT -> p.getNumberValue();
+                        case VALUE_STRING -> p.getText();
+                        case VALUE_TRUE, VALUE_FALSE -> p.getBooleanValue();
+                        default -> {
+                            p.skipChildren();
+                            yield null;
+                        }
+                    });
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        return bd;
+    }
+
+    private static LayoutData readLayout(JsonParser p) throws IOException {
+        LayoutData ld = new LayoutData();
+        String f;
+        while ((f = p.nextFieldName()) != null) {
+            JsonToken t = p.nextToken();
+            Integer v = t == JsonToken.VALUE_NUMBER_INT ? p.getIntValue() : null;
+            switch (f) {
+                case "type"      -> ld.type = p.getValueAsString();
+                case "hgap"      -> ld.hgap = v;
+                case "vgap"      -> ld.vgap = v;
+                case "alignment" -> ld.alignment = v;
+                case "rows"      -> ld.rows = v;
+                case "cols"      -> ld.cols = v;
+                default          -> p.skipChildren();
+            }
+        }
+        return ld;
+    }
+
+    private static GridBagData readGridBag(JsonParser p) throws IOException {
+        GridBagData gb = new GridBagData();
+        String f;
+        while ((f = p.nextFieldName()) != null) {
+            JsonToken t = p.nextToken();
+            switch (f) {
+                case "gridx"      -> gb.gridx = p.getIntValue();
+                case "gridy"      -> gb.gridy = p.getIntValue();
+                case "gridwidth"  -> gb.gridwidth = p.getIntValue();
+                case "gridheight" -> gb.gridheight = p.getIntValue();
+                case "weightx"    -> gb.weightx = p.getDoubleValue();
+                case "weighty"    -> gb.weighty = p.getDoubleValue();
+                case "anchor"     -> gb.anchor = p.getIntValue();
+                case "fill"       -> gb.fill = p.getIntValue();
+                case "ipadx"      -> gb.ipadx = p.getIntValue();
+                case "ipady"      -> gb.ipady = p.getIntValue();
+                case "insets" -> {
+                    if (t != JsonToken.START_ARRAY) break;
+                    List<Integer> in = new ArrayList<>(4);
+                    while (p.nextToken() != JsonToken.END_ARRAY) in.add(p.getIntValue());
+                    gb.insets = in.stream().mapToInt(Integer::intValue).toArray();
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return gb;
+    }
+
+    private static void expect(JsonParser p, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Expected " + expected + " but found " + actual + " at " + p.getCurrentLocation());
+        }
+    }
+
+    /* ───────────────────────── building ───────────────────────── */
+
+    /**
+     * Builds the components into a root container as they are read: a component is added to
+     * its parent once its own properties are set, and a container gets its layout (and its
+     * children their grid-bag constraints) after the last child.
+     */
+    public static class SurfaceBuilder implements Sink {
+        private final Container root;
+        private final Deque<Container> parents = new ArrayDeque<>();
+        /** Grid-bag constraints of the children read so far, one list per open container. */
+        private final Deque<List<GridBagData>> childConstraints = new ArrayDeque<>();
+        private final List<Object[]> pendingPopups = new ArrayList<>();
+        private String userCode = "";
+        private boolean menusLoaded = false;
+        private int built = 0;
+
+        public SurfaceBuilder(Container root) {
+            this.root = root;
+        }
+
+        /** For building into a design whose popup menus are already registered. */
+        SurfaceBuilder(Container root, boolean menusLoaded) {
+            this.root = root;
+            this.menusLoaded = menusLoaded;
+        }
+
+        public String getUserCode() {
+            return userCode;
+        }
+
+        /** Components built so far. */
+        public int getBuilt() {
+            return built;
+        }
+
+        @Override public void popupMenus(List<PopupMenuData> menus) {
+            PopupMenuManager.clearAll();
+            for (PopupMenuData pmData : menus) {
+                JPopupMenu menu = new JPopupMenu();
+                for (MenuItemData miData : pmData.items) {
+                    JMenuItem item = new JMenuItem(miData.text);
+                    item.setActionCommand(miData.actionCommand);
+                    menu.add(item);
+                }
+                PopupMenuManager.putMenu(pmData.name, menu);
+            }
+            menusLoaded = true;
+        }
+
+        @Override public void userCode(String code) {
+            this.userCode = code;
+        }
+
+        @Override public void open(NodeSpec n, int depth) {
+            if (!childConstraints.isEmpty()) childConstraints.peek().add(n.gridBag);
+            childConstraints.push(new ArrayList<>());
+            if (depth == 0) {
+                parents.push(root);
+                return;
+            }
+            JComponent comp = instantiate(n.className);
+            apply(comp, n);
+            Container parent = parents.peek();
+            if (parent.getLayout() instanceof BorderLayout) {
+                parent.add(comp, n.layoutConstraint);
+            } else {
+                parent.add(comp);
+            }
+            // kept for the next save, and for a later switch of the parent to a BorderLayout
+            comp.putClientProperty("layoutConstraint", n.layoutConstraint);
+            comp.putClientProperty("positionType",
+                    n.positionType != null ? PositionType.valueOf(n.positionType) : PositionType.ABSOLUTE);
+            parents.push(comp);
+            built++;
+        }
+
+        @Override public void close(NodeSpec n, int depth) {
+            Container cont = parents.pop();
+            List<GridBagData> constraints = childConstraints.pop();
+            if (n.layout != null) cont.setLayout(n.layout.toLayoutManager());
+            if (cont.getLayout() instanceof GridBagLayout gbl) {
+                for (int i = 0; i < constraints.size() && i < cont.getComponentCount(); i++) {
+                    GridBagData gb = constraints.get(i);
+                    if (gb != null) gbl.setConstraints(cont.getComponent(i), gb.toConstraints());
+                }
+            }
+        }
+
+        /** Popup references read before the menus themselves are resolved now. */
+        @Override public void finish() {
+            if (!menusLoaded) popupMenus(List.of());
+            for (Object[] ref : pendingPopups) {
+                ((JComponent) ref[0]).putClientProperty("savedPopup", PopupMenuManager.getMenu((String) ref[1]));
+            }
+            pendingPopups.clear();
+        }
+
+        private static JComponent instantiate(String className) {
+            try {
+                return (JComponent) Class.forName(className).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException ex) {
+                throw new IllegalArgumentException("Cannot create component " + className, ex);
+            }
+        }
+
+        void apply(JComponent comp, NodeSpec n) {
+            comp.setName(n.name);
+            comp.setVisible(n.visible);
+            if (n.enabled != null) comp.setEnabled(n.enabled);
+            if (n.bounds != null) comp.setBounds(n.bounds);
+            if (n.preferredSize != null) comp.setPreferredSize(n.preferredSize);
+            if (n.minimumSize != null) comp.setMinimumSize(n.minimumSize);
+            if (n.maximumSize != null) comp.setMaximumSize(n.maximumSize);
+            if (n.background != null) comp.setBackground(n.background);
+            if (n.foreground != null) comp.setForeground(n.foreground);
+            if (n.font != null) comp.setFont(n.font);
+            if (n.text != null) applyText(comp, n.text);
+            if (n.border != null) comp.setBorder(n.border.toBorder());
+            if (n.popupMenuName != null) {
+                // kept on the component for the PreviewPanel; not installed as its popup here
+                if (menusLoaded) comp.putClientProperty("savedPopup", PopupMenuManager.getMenu(n.popupMenuName));
+                else pendingPopups.add(new Object[]{ comp, n.popupMenuName });
+            }
+        }
+
+        static void applyText(JComponent comp, String text) {
+            if (comp instanceof AbstractButton ab) {
+                ab.setText(text);
+            } else if (comp instanceof JLabel lbl) {
+                lbl.setText(text);
+            } else if (comp instanceof javax.swing.text.JTextComponent tc) {
+                tc.setText(text);
+            } else if (comp instanceof JComboBox<?> combo) {
+                combo.setSelectedItem(text);
+            } else if (comp instanceof JSpinner spinner) {
+                if (spinner.getModel() instanceof SpinnerNumberModel) {
+                    try {
+                        spinner.setValue(Double.valueOf(text));
+                        return;
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                spinner.setValue(text);
+            }
+        }
+    }
+}
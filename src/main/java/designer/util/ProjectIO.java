@@ -1,8 +1,6 @@
 package designer.util;
 
-import designer.model.MenuItemData;
 import designer.model.PopupMenuData;
-import designer.model.ProjectData;
 import designer.ui.ComponentHierarchyPanel;
 import designer.ui.DesignSurfacePanel;
 import designer.ui.OutputConsole;
@@ -11,8 +9,25 @@ import designer.ui.PreviewPanel;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 import static designer.util.Static.*;
 
@@ -22,21 +37,54 @@ public class ProjectIO
     private static File lastDirectory;
     private static final JFileChooser fileChooser;
 
+    /** Components attached to the surface per EDT batch while a project opens. */
+    private static final int OPEN_BATCH = 250;
+    private static final int BATCHES_IN_FLIGHT = 2;
+    /** Saves of at least this many components report their progress. */
+    private static final int SAVE_PROGRESS_MIN = 2000;
+    /** Project files and their journals are only ever touched from this thread. */
+    static final ScheduledExecutorService IO = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "project-io");
+        t.setDaemon(true);
+        return t;
+    });
+    /** EDT only. */
+    private static boolean opening = false;
+    /** The open in progress, if any. EDT only. */
+    private static EdtBatchSink openSink;
+    /** Journal of the design on the surface; null while a project opens, or after it failed to. */
+    private static DesignJournal journal;
+
     static
     {
         lastDirectory = new File(System.getProperty("user.home"));
         fileChooser   = new JFileChooser(lastDirectory);
     }
 
-    /** Clears everything to start a brand-new project. */
+    /** Clears everything to start a brand-new project, journaled against the recovery file. */
     public static void newProject() {
+        resetWorkspace();
+        journal = DesignJournal.start(designSurface, DesignJournal.recoveryBase(), codeTabs::getUserCode);
+    }
+
+    private static void resetWorkspace() {
+        // an open still in progress would keep attaching to the old surface and replace the menus
+        if (openSink != null) {
+            openSink.cancelled = true;
+            openSink.monitor.close();
+            openSink = null;
+            opening = false;
+        }
+        if (journal != null) journal.close();
+        journal = null;
+
         codeTabs.setDesignerCode("");
         codeTabs.setUserCode("");
 
         designSurface = new DesignSurfacePanel();
         preview       = new PreviewPanel(designSurface, codeTabs);
 
-        centerTabs.setComponentAt(0, designSurface);
+        centerTabs.setComponentAt(0, designSurface.getLayer());
         centerTabs.setComponentAt(1, preview);
 
         hierarchyPanel = new ComponentHierarchyPanel(designSurface);
@@ -49,7 +97,17 @@ public class ProjectIO
         codeTabs.setDesignerCode(CodeManager.generateCode(designSurface));
     }
 
+    /**
+     * Copies the design on the EDT, then writes it on the project-io worker into a temp file
+     * next to the target, forces it to disk and moves it over the target in one atomic step.
+     * A crash mid-save leaves the previous file intact. The saved file becomes the base of the
+     * design's journal.
+     */
     public static void saveProject() {
+        if (opening) {
+            OutputConsole.info("Wait for the project to finish opening before saving");
+            return;
+        }
         fileChooser.setCurrentDirectory(lastDirectory);
         fileChooser.setDialogTitle("Save Project");
         fileChooser.setSelectedFile(currentFile);
@@ -60,61 +118,274 @@ public class ProjectIO
         lastDirectory = chosen.getParentFile();   // remember for next time
         currentFile   = chosen;
 
+        ProjectCodec.Snapshot snapshot;
         try {
-            ProjectData proj = ModelBuilder.exportProject(designerFrame);
-            mapper.writerWithDefaultPrettyPrinter()
-                    .writeValue(currentFile, proj);
-            OutputConsole.info("Saved project as '" + currentFile.getName() + "'");
+            snapshot = ProjectCodec.snapshot(designSurface, codeTabs.getUserCode());
         } catch (Exception ex) {
             ex.printStackTrace();
             OutputConsole.error("Save failed: " + ex.getMessage());
+            return;
+        }
+        int total = snapshot.size();
+        if (total >= SAVE_PROGRESS_MIN) {
+            OutputConsole.info("Saving '" + chosen.getName() + "' (" + total + " components)...");
+        }
+
+        long start = System.nanoTime();
+        int[] reported = { 0 };
+        IntConsumer progress = written -> {
+            int quarter = written * 4 / total;
+            if (total >= SAVE_PROGRESS_MIN && quarter > reported[0] && quarter < 4) {
+                reported[0] = quarter;
+                SwingUtilities.invokeLater(() -> OutputConsole.info("Saving '" + chosen.getName() + "': "
+                        + quarter * 25 + "%"));
+            }
+        };
+        CompletableFuture<Long> saved = journal != null
+                ? journal.rebase(chosen.toPath(), snapshot, progress)
+                : CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return writeAtomically(chosen.toPath(), snapshot, progress);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }, IO);
+        saved.whenComplete((bytes, err) -> {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            SwingUtilities.invokeLater(() -> {
+                if (err == null) {
+                    OutputConsole.info("Saved project as '" + chosen.getName() + "' ("
+                            + total + " components, " + bytes / 1024 + " KB in " + millis + " ms)");
+                    return;
+                }
+                Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                cause.printStackTrace();
+                OutputConsole.error("Save failed: " + cause.getMessage());
+            });
+        });
+    }
+
+    /** Returns the size of the written file. */
+    static long writeAtomically(Path target, ProjectCodec.Snapshot snapshot, IntConsumer progress) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, target.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ProjectCodec.write(Channels.newOutputStream(ch), BinaryProjectCodec.handles(target.toFile()), snapshot, progress);
+                ch.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
         }
+        // make the rename itself durable; not every platform can open a directory for this
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException ignored) {
+        }
+        return Files.size(target);
     }
 
-    /** Load a project JSON and rebuild the surface from it. */
+    /**
+     * Load a project file without blocking the EDT: it is parsed on the project-io worker and
+     * its components are attached to the surface in batches of {@value #OPEN_BATCH}, behind a
+     * cancellable progress monitor. The hierarchy and the generated code follow once the whole
+     * tree is in place.
+     */
     public static void openProject() {
+        if (opening) {
+            OutputConsole.info("A project is still being opened");
+            return;
+        }
         fileChooser.setCurrentDirectory(lastDirectory);
         fileChooser.setDialogTitle("Open Project");
 
         if (fileChooser.showOpenDialog(designerFrame) != JFileChooser.APPROVE_OPTION) return;
 
-        newProject();
-
         File chosen = fileChooser.getSelectedFile();
         lastDirectory = chosen.getParentFile();   // remember for next time
-        currentFile   = chosen;
+        load(chosen, false);
+    }
 
-        try {
-            ProjectData proj = mapper.readValue(currentFile, ProjectData.class);
+    /**
+     * Brings back the design of a session that ended without saving it: the recovery file
+     * written by the last compaction, if any, plus whatever its journal holds. Call once the
+     * frame is showing.
+     */
+    public static void recoverSession() {
+        File base = DesignJournal.recoveryBase().toFile();
+        if (base.isFile()) {
+            load(base, true);
+            return;
+        }
+        DesignSurfacePanel surface = designSurface;
+        surface.beginImport();
+        journal = DesignJournal.resume(surface, base.toPath(), codeTabs::getUserCode);
+        surface.endImport();
+        if (journal.getReplayed() == 0) return;
 
-            // --- NEW: rebuild PopupMenuManager from the saved data ---
-            List<String> menuNames = new ArrayList<>(PopupMenuManager.getMenuNames());
-            for (String name : menuNames) {
-                PopupMenuManager.removeMenu(name);
-            }
-            for (PopupMenuData pmData : proj.popupMenus) {
-                JPopupMenu menu = new JPopupMenu();
-                for (MenuItemData miData : pmData.items) {
-                    JMenuItem item = new JMenuItem(miData.text);
-                    item.setActionCommand(miData.actionCommand);
-                    menu.add(item);
-                }
-                PopupMenuManager.putMenu(pmData.name, menu);
+        hierarchyPanel.designChanged();
+        CodeManager.generateCodeAsync(designSurface, codeTabs::setDesignerCode);
+        OutputConsole.info("Recovered unsaved session (" + journal.getReplayed() + " changes)");
+    }
+
+    /** An untitled load is the recovery file; the design stays untitled once it is in. */
+    private static void load(File chosen, boolean untitled) {
+        resetWorkspace();
+        currentFile = untitled ? null : chosen;
+
+        DesignSurfacePanel surface = designSurface;
+        ProjectCodec.SurfaceBuilder builder = surface.beginImport();
+        ProgressMonitor monitor = new ProgressMonitor(designerFrame, "Opening " + chosen.getName(), null, 0, 1000);
+        EdtBatchSink sink = new EdtBatchSink(builder, surface, monitor, chosen.length());
+        long start = System.nanoTime();
+        opening = true;
+        openSink = sink;
+
+        IO.submit(() -> {
+            Throwable err = null;
+            try (FileInputStream in = new FileInputStream(chosen)) {
+                sink.channel = in.getChannel();
+                ProjectCodec.read(in, BinaryProjectCodec.handles(chosen), sink);
+            } catch (Throwable ex) {
+                err = ex;
             }
+            Throwable parseError = err;
+            SwingUtilities.invokeLater(() -> finishOpen(chosen, untitled, surface, builder, sink, parseError, start));
+        });
+    }
 
-            codeTabs.setUserCode(proj.userCode);
-            designSurface.importProject(proj);
+    /**
+     * On the EDT, after the last batch has been attached. The file's journal is replayed
+     * before the surface reports changes again, so that the replay is not journaled anew.
+     */
+    private static void finishOpen(File file, boolean untitled, DesignSurfacePanel surface,
+                                   ProjectCodec.SurfaceBuilder builder, EdtBatchSink sink,
+                                   Throwable parseError, long start) {
+        sink.monitor.close();
+        if (sink != openSink) {   // a new project replaced it meanwhile
+            surface.endImport();
+            return;
+        }
+        opening = false;
+        openSink = null;
 
-            hierarchyPanel.designChanged();
+        Throwable err = sink.failure != null ? sink.failure : parseError;
+        if (sink.cancelled && sink.failure == null) {
+            surface.endImport();
+            newProject();
+            OutputConsole.info("Open cancelled");
+            return;
+        }
+        if (err != null) {
+            surface.endImport();
+            err.printStackTrace();
+            OutputConsole.error("Open failed: " + err.getMessage());
+            return;
+        }
 
-            preview = new PreviewPanel(designSurface, codeTabs);
-            centerTabs.setComponentAt(1, preview);
-            designerFrame.setupListenersAndBindings();
-            codeTabs.setDesignerCode(CodeManager.generateCode(designSurface));
-            OutputConsole.info("Opened project '" + currentFile.getName() + "'");
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            OutputConsole.error("Open failed: " + ex.getMessage());
+        codeTabs.setUserCode(builder.getUserCode());
+        journal = DesignJournal.resume(surface, file.toPath(), codeTabs::getUserCode);
+        surface.endImport();
+        hierarchyPanel.designChanged();
+
+        preview = new PreviewPanel(designSurface, codeTabs);
+        centerTabs.setComponentAt(1, preview);
+        designerFrame.setupListenersAndBindings();
+        CodeManager.generateCodeAsync(designSurface, codeTabs::setDesignerCode);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        if (untitled) {
+            OutputConsole.info("Recovered unsaved session (" + builder.getBuilt() + " components, "
+                    + journal.getReplayed() + " changes since)");
+            return;
+        }
+        OutputConsole.info("Opened project '" + file.getName() + "' (" + builder.getBuilt()
+                + " components in " + millis + " ms)");
+        if (journal.getReplayed() > 0) {
+            OutputConsole.info("Recovered " + journal.getReplayed() + " unsaved changes from '"
+                    + file.getName() + DesignJournal.SUFFIX + "'");
+        }
+    }
+
+    /**
+     * Runs on the project-io worker and replays what the parser delivers on the EDT, a batch
+     * at a time. At most {@value #BATCHES_IN_FLIGHT} batches wait on the EDT, so a parser that
+     * is faster than the surface does not queue up the whole file.
+     */
+    private static final class EdtBatchSink implements ProjectCodec.Sink {
+        private final ProjectCodec.Sink target;
+        private final DesignSurfacePanel surface;
+        private final ProgressMonitor monitor;
+        private final long length;
+        private final Semaphore inFlight = new Semaphore(BATCHES_IN_FLIGHT);
+        private List<Consumer<ProjectCodec.Sink>> batch = new ArrayList<>();
+        private int opened = 0;
+        /** The file being read; its position drives the progress bar. */
+        FileChannel channel;
+        /** Set on the EDT; the worker stops at its next batch. */
+        volatile boolean cancelled = false;
+        volatile Throwable failure;
+
+        EdtBatchSink(ProjectCodec.Sink target, DesignSurfacePanel surface, ProgressMonitor monitor, long length) {
+            this.target  = target;
+            this.surface = surface;
+            this.monitor = monitor;
+            this.length  = Math.max(1, length);
+        }
+
+        @Override public void popupMenus(List<PopupMenuData> menus) {
+            batch.add(s -> s.popupMenus(menus));
+        }
+
+        @Override public void userCode(String code) {
+            batch.add(s -> s.userCode(code));
+        }
+
+        @Override public void open(ProjectCodec.NodeSpec node, int depth) {
+            batch.add(s -> s.open(node, depth));
+            if (++opened % OPEN_BATCH == 0) flush();
+        }
+
+        @Override public void close(ProjectCodec.NodeSpec node, int depth) {
+            batch.add(s -> s.close(node, depth));
+        }
+
+        @Override public void finish() {
+            batch.add(ProjectCodec.Sink::finish);
+            flush();
+        }
+
+        private void flush() {
+            if (cancelled) throw new CancellationException();
+            List<Consumer<ProjectCodec.Sink>> ops = batch;
+            batch = new ArrayList<>();
+            int progress = progress();
+
+            inFlight.acquireUninterruptibly();
+            SwingUtilities.invokeLater(() -> {
+                try {
+                    if (cancelled) return;
+                    for (Consumer<ProjectCodec.Sink> op : ops) op.accept(target);
+                    surface.revalidate();
+                    surface.repaint();
+                    monitor.setProgress(progress);
+                    if (monitor.isCanceled()) cancelled = true;
+                } catch (RuntimeException ex) {
+                    failure = ex;
+                    cancelled = true;
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        /** Per mille of the file read so far; the readers buffer a little ahead. */
+        private int progress() {
+            try {
+                return (int) Math.min(1000, channel.position() * 1000 / length);
+            } catch (IOException ex) {
+                return 0;
+            }
         }
     }
 }
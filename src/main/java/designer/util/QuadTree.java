@@ -0,0 +1,201 @@
+package designer.util;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Region quadtree of rectangles. Each item lives in the smallest node that fully contains
+ * it, so point and rectangle queries only visit the nodes along their path. Items are
+ * identified by reference; {@link #put} moves an item that is already present.
+ * The root grows to fit items placed outside of it.
+ */
+public class QuadTree<T>
+{
+    private static final int MAX_ITEMS = 8;
+    private static final int MAX_DEPTH = 12;
+    private static final int MIN_EXTENT = 256;
+
+    private Node<T> root;
+    private final Map<T, Node<T>> owner = new HashMap<>();
+    private final Map<T, Rectangle> bounds = new HashMap<>();
+    private int version = 0;
+
+    private static final class Node<T> {
+        final Rectangle area;
+        final int depth;
+        final List<T> items = new ArrayList<>();
+        Node<T>[] kids;
+
+        Node(Rectangle area, int depth) {
+            this.area = area;
+            this.depth = depth;
+        }
+    }
+
+    public QuadTree() {
+        root = new Node<>(new Rectangle(0, 0, MIN_EXTENT, MIN_EXTENT), 0);
+    }
+
+    /** Insert the item, or move it if it is already indexed. */
+    public void put(T item, Rectangle r) {
+        Rectangle copy = new Rectangle(r.x, r.y, Math.max(0, r.width), Math.max(0, r.height));
+        Rectangle old = bounds.get(item);
+        if (old != null) {
+            if (old.equals(copy)) return;
+            version++;
+            Node<T> node = owner.get(item);
+            // still fits where it is and would not go deeper: just update the bounds
+            if (encloses(node.area, copy) && (node.kids == null || childFor(node, copy) == null)) {
+                bounds.put(item, copy);
+                return;
+            }
+            remove(item);
+        }
+        bounds.put(item, copy);
+        version++;
+        if (!encloses(root.area, copy)) {
+            grow(copy);
+        } else {
+            insert(root, item, copy);
+        }
+    }
+
+    public void remove(T item) {
+        Node<T> node = owner.remove(item);
+        if (node != null) node.items.remove(item);
+        if (bounds.remove(item) != null) version++;
+    }
+
+    public boolean contains(T item) {
+        return bounds.containsKey(item);
+    }
+
+    public Rectangle boundsOf(T item) {
+        Rectangle r = bounds.get(item);
+        return r == null ? null : new Rectangle(r);
+    }
+
+    /** Changes whenever an item is added, moved or removed; lets callers cache derived geometry. */
+    public int version() {
+        return version;
+    }
+
+    public int size() {
+        return bounds.size();
+    }
+
+    public void clear() {
+        owner.clear();
+        bounds.clear();
+        version++;
+        root = new Node<>(new Rectangle(0, 0, MIN_EXTENT, MIN_EXTENT), 0);
+    }
+
+    /** Items whose bounds contain the point. */
+    public List<T> query(Point p) {
+        List<T> out = new ArrayList<>();
+        Node<T> node = root;
+        while (node != null && node.area.contains(p)) {
+            for (T item : node.items) {
+                if (bounds.get(item).contains(p)) out.add(item);
+            }
+            Node<T> next = null;
+            if (node.kids != null) {
+                for (Node<T> kid : node.kids) {
+                    if (kid.area.contains(p)) { next = kid; break; }
+                }
+            }
+            node = next;
+        }
+        return out;
+    }
+
+    /** Items whose bounds intersect the rectangle. */
+    public List<T> query(Rectangle r) {
+        List<T> out = new ArrayList<>();
+        collect(root, r, out);
+        return out;
+    }
+
+    private void collect(Node<T> node, Rectangle r, List<T> out) {
+        if (!node.area.intersects(r)) return;
+        for (T item : node.items) {
+            if (bounds.get(item).intersects(r)) out.add(item);
+        }
+        if (node.kids != null) {
+            for (Node<T> kid : node.kids) collect(kid, r, out);
+        }
+    }
+
+    private void insert(Node<T> node, T item, Rectangle r) {
+        while (true) {
+            if (node.kids == null && node.items.size() >= MAX_ITEMS && node.depth < MAX_DEPTH) {
+                split(node);
+            }
+            Node<T> kid = node.kids == null ? null : childFor(node, r);
+            if (kid == null) {
+                node.items.add(item);
+                owner.put(item, node);
+                return;
+            }
+            node = kid;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void split(Node<T> node) {
+        Rectangle a = node.area;
+        int hw = a.width / 2, hh = a.height / 2;
+        node.kids = (Node<T>[]) new Node<?>[]{
+                new Node<>(new Rectangle(a.x, a.y, hw, hh), node.depth + 1),
+                new Node<>(new Rectangle(a.x + hw, a.y, a.width - hw, hh), node.depth + 1),
+                new Node<>(new Rectangle(a.x, a.y + hh, hw, a.height - hh), node.depth + 1),
+                new Node<>(new Rectangle(a.x + hw, a.y + hh, a.width - hw, a.height - hh), node.depth + 1)
+        };
+        List<T> keep = new ArrayList<>();
+        for (T item : node.items) {
+            Node<T> kid = childFor(node, bounds.get(item));
+            if (kid == null) {
+                keep.add(item);
+            } else {
+                kid.items.add(item);
+                owner.put(item, kid);
+            }
+        }
+        node.items.clear();
+        node.items.addAll(keep);
+    }
+
+    private Node<T> childFor(Node<T> node, Rectangle r) {
+        for (Node<T> kid : node.kids) {
+            if (encloses(kid.area, r)) return kid;
+        }
+        return null;
+    }
+
+    /** Like {@link Rectangle#contains(Rectangle)}, but an empty {@code r} is enclosed too. */
+    private static boolean encloses(Rectangle a, Rectangle r) {
+        return r.x >= a.x && r.y >= a.y
+                && (long) r.x + r.width <= (long) a.x + a.width
+                && (long) r.y + r.height <= (long) a.y + a.height;
+    }
+
+    /** Rebuild with a root large enough for everything indexed so far plus {@code r}. */
+    private void grow(Rectangle r) {
+        Rectangle all = root.area.union(r);
+        for (Rectangle b : bounds.values()) all = all.union(b);
+        int extent = MIN_EXTENT;
+        while (extent < all.width || extent < all.height) extent *= 2;
+        // leave room on all sides so the next nearby item does not force another rebuild
+        Rectangle area = new Rectangle(all.x - extent / 2, all.y - extent / 2, extent * 2, extent * 2);
+
+        root = new Node<>(area, 0);
+        owner.clear();
+        for (Map.Entry<T, Rectangle> e : bounds.entrySet()) {
+            insert(root, e.getKey(), e.getValue());
+        }
+    }
+}
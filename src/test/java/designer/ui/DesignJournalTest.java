@@ -0,0 +1,358 @@
+package designer.ui;
+
+import designer.types.PositionType;
+import designer.util.BinaryProjectCodec;
+import designer.util.DesignJournal;
+import designer.util.PopupMenuManager;
+import designer.util.ProjectCodec;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import javax.swing.border.LineBorder;
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A design loaded from its base and rebuilt from the journal must save exactly like the live
+ * design the journal followed. In this package so that the edits can post their design events.
+ */
+class DesignJournalTest
+{
+    private static final String[] MENUS = { "m0", "m1", "m2" };
+
+    @Test
+    void replayRebuildsTheLiveDesign() throws Exception {
+        try {
+            for (int seed = 0; seed < 6; seed++) {
+                Random rnd = new Random(seed);
+                Path dir = Files.createTempDirectory("journal");
+                try {
+                    Path base = newBase(dir.resolve(seed % 2 == 0 ? "p" + BinaryProjectCodec.EXTENSION : "p.json"), rnd);
+                    String live = edit(base, rnd, seed % 3 == 0);
+
+                    Resumed back = resume(base);
+                    assertEquals(live, back.saved, "seed " + seed);
+                    assertTrue(back.replayed > 0, "seed " + seed);
+                } finally {
+                    delete(dir);
+                }
+            }
+        } finally {
+            PopupMenuManager.clearAll();
+        }
+    }
+
+    @Test
+    void tornTrailingRecordIsDropped() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            Random rnd = new Random(42);
+            Path base = newBase(dir.resolve("p" + BinaryProjectCodec.EXTENSION), rnd);
+            String live = edit(base, rnd, false);
+            Path journal = base.resolveSibling(base.getFileName() + DesignJournal.SUFFIX);
+            long intact = Files.size(journal);
+            int records = resume(base).replayed;
+
+            // a record cut short by a crash: its length promises more than follows
+            Files.write(journal, new byte[]{ 40, 6, 1, 2, 3 }, StandardOpenOption.APPEND);
+            Resumed back = resume(base);
+            assertEquals(live, back.saved);
+            assertEquals(records, back.replayed);
+            assertEquals(intact, Files.size(journal), "torn record cut off");
+        } finally {
+            PopupMenuManager.clearAll();
+            delete(dir);
+        }
+    }
+
+    @Test
+    void journalForAnotherVersionOfTheBaseIsIgnored() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try {
+            Random rnd = new Random(7);
+            Path base = newBase(dir.resolve("p.json"), rnd);
+            edit(base, rnd, false);
+            String unedited = resume(base, false).saved;
+
+            // the base was rewritten after the journal started, by something other than the journal
+            Files.setLastModifiedTime(base, FileTime.fromMillis(Files.getLastModifiedTime(base).toMillis() + 60_000));
+            Resumed back = resume(base);
+            assertEquals(0, back.replayed);
+            assertEquals(unedited, back.saved);
+        } finally {
+            PopupMenuManager.clearAll();
+            delete(dir);
+        }
+    }
+
+    /* ───── sessions ───── */
+
+    private record Resumed(String saved, int replayed) {}
+
+    /** Writes a random design to {@code base}. */
+    private static Path newBase(Path base, Random rnd) throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            PopupMenuManager.clearAll();
+            for (String name : MENUS) {
+                if (rnd.nextBoolean()) PopupMenuManager.putMenu(name, menu(name, rnd));
+            }
+            DesignSurfacePanel surface = new DesignSurfacePanel();
+            for (int i = 0; i < 12; i++) add(surface, rnd);
+            try (OutputStream out = Files.newOutputStream(base)) {
+                ProjectCodec.write(out, BinaryProjectCodec.handles(base.toFile()),
+                        ProjectCodec.snapshot(surface, "code"), written -> {});
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        return base;
+    }
+
+    /** Opens {@code base}, edits it with the journal running and returns the design as saved. */
+    private static String edit(Path base, Random rnd, boolean rebase) throws Exception {
+        DesignSurfacePanel[] opened = new DesignSurfacePanel[1];
+        DesignJournal[] journal = new DesignJournal[1];
+        SwingUtilities.invokeAndWait(() -> {
+            opened[0] = new DesignSurfacePanel();
+            load(opened[0], base);
+            opened[0].endImport();
+            journal[0] = DesignJournal.start(opened[0], base, () -> "code");
+        });
+        DesignSurfacePanel surface = opened[0];
+        for (int batch = 0; batch < 60; batch++) {
+            int edits = 1 + rnd.nextInt(4);
+            SwingUtilities.invokeAndWait(() -> {
+                for (int i = 0; i < edits; i++) edit(surface, rnd);
+            });
+            if (rebase && batch == 30) {
+                SwingUtilities.invokeAndWait(() -> {});   // the batch reaches the journal first
+                ProjectCodec.Snapshot[] s = new ProjectCodec.Snapshot[1];
+                SwingUtilities.invokeAndWait(() -> s[0] = ProjectCodec.snapshot(surface, "code"));
+                journal[0].rebase(base, s[0], written -> {}).get();
+            }
+        }
+        String[] saved = new String[1];
+        SwingUtilities.invokeAndWait(() -> saved[0] = save(surface));
+        awaitJournal();
+        SwingUtilities.invokeAndWait(journal[0]::close);
+        return saved[0];
+    }
+
+    private static Resumed resume(Path base) throws Exception {
+        return resume(base, true);
+    }
+
+    /** Loads {@code base} into a new surface, with or without what its journal recorded. */
+    private static Resumed resume(Path base, boolean replay) throws Exception {
+        Resumed[] back = new Resumed[1];
+        SwingUtilities.invokeAndWait(() -> {
+            DesignSurfacePanel surface = new DesignSurfacePanel();
+            load(surface, base);
+            DesignJournal journal = replay ? DesignJournal.resume(surface, base, () -> "code") : null;
+            surface.endImport();
+            back[0] = new Resumed(save(surface), journal == null ? 0 : journal.getReplayed());
+            if (journal != null) journal.close();
+        });
+        awaitJournal();
+        return back[0];
+    }
+
+    private static void load(DesignSurfacePanel surface, Path base) {
+        ProjectCodec.SurfaceBuilder builder = surface.beginImport();
+        try (InputStream in = Files.newInputStream(base)) {
+            ProjectCodec.read(in, BinaryProjectCodec.handles(base.toFile()), builder);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static String save(DesignSurfacePanel surface) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ProjectCodec.write(out, false, ProjectCodec.snapshot(surface, "code"), written -> {});
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** The surface hands its batch over on the EDT; the journal writes it out half a second later. */
+    private static void awaitJournal() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {});
+        SwingUtilities.invokeAndWait(() -> {});
+        Thread.sleep(1000);
+    }
+
+    /* ───── random edits, each posting the event the designer posts ───── */
+
+    private static void edit(DesignSurfacePanel surface, Random rnd) {
+        List<JComponent> all = new ArrayList<>();
+        collect(surface, all);
+        if (all.isEmpty() || rnd.nextInt(6) == 0) {
+            add(surface, rnd);
+            return;
+        }
+        JComponent c = all.get(rnd.nextInt(all.size()));
+        Container parent = c.getParent();
+        switch (rnd.nextInt(10)) {
+            case 0 -> {
+                int index = parent.getComponentZOrder(c);
+                parent.remove(c);
+                surface.post(new DesignEvent.ComponentRemoved(c, parent, index));
+            }
+            case 1 -> {
+                List<Container> targets = new ArrayList<>(List.of(surface));
+                for (JComponent k : all) {
+                    if (k instanceof JPanel && k != c && !SwingUtilities.isDescendingFrom(k, c)) targets.add(k);
+                }
+                Container to = targets.get(rnd.nextInt(targets.size()));
+                int from = parent.getComponentZOrder(c);
+                parent.remove(c);
+                attach(to, c, rnd.nextInt(to.getComponentCount() + 1));
+                surface.post(new DesignEvent.Reparented(c, parent, from, to, to.getComponentZOrder(c)));
+            }
+            case 2 -> {
+                int from = parent.getComponentZOrder(c);
+                int to = rnd.nextInt(parent.getComponentCount());
+                parent.setComponentZOrder(c, to);
+                surface.post(new DesignEvent.ZOrderChanged(c, parent, from, to));
+            }
+            case 3 -> {
+                Rectangle old = c.getBounds();
+                c.setBounds(rnd.nextInt(300), rnd.nextInt(300), 1 + rnd.nextInt(100), 1 + rnd.nextInt(40));
+                surface.post(new DesignEvent.BoundsChanged(c, old, c.getBounds()));
+            }
+            case 4 -> {
+                Color old = c.getBackground();
+                c.setBackground(new Color(rnd.nextInt(0xFFFFFF)));
+                surface.post(new DesignEvent.PropertyChanged(c, "background", old, c.getBackground()));
+            }
+            case 5 -> {
+                // cleared values must be replayed as cleared
+                if (c instanceof JLabel l) {
+                    String old = l.getText();
+                    l.setText(old != null && rnd.nextBoolean() ? null : "text " + rnd.nextInt(100));
+                    surface.post(new DesignEvent.PropertyChanged(c, "text", old, l.getText()));
+                } else {
+                    Object old = c.getBorder();
+                    c.setBorder(old != null && rnd.nextBoolean() ? null : new LineBorder(new Color(rnd.nextInt(0xFFFFFF))));
+                    surface.post(new DesignEvent.PropertyChanged(c, "border", old, c.getBorder()));
+                }
+            }
+            case 6 -> {
+                String old = c.getName();
+                c.setName(old != null && rnd.nextBoolean() ? null : "c" + rnd.nextInt(1000));
+                surface.post(new DesignEvent.PropertyChanged(c, "name", old, c.getName()));
+            }
+            case 7 -> {
+                if (c instanceof JPanel) {
+                    LayoutManager old = c.getLayout();
+                    c.setLayout(layout(rnd));
+                    surface.post(new DesignEvent.PropertyChanged(c, "layout", old, c.getLayout()));
+                }
+            }
+            default -> {
+                // menus are refilled in place, as the editor does, or removed
+                String name = MENUS[rnd.nextInt(MENUS.length)];
+                JPopupMenu menu = PopupMenuManager.getMenu(name);
+                if (menu != null && rnd.nextInt(4) == 0) {
+                    PopupMenuManager.removeMenu(name);
+                    menu = null;
+                } else if (menu == null) {
+                    PopupMenuManager.putMenu(name, menu = menu(name, rnd));
+                } else {
+                    menu.add(new JMenuItem(name + " item " + rnd.nextInt(10)));
+                    PopupMenuManager.putMenu(name, menu);
+                }
+                Object old = c.getClientProperty("savedPopup");
+                JPopupMenu now = menu == old || menu == null || rnd.nextInt(3) == 0 ? null : menu;
+                if (now == old) now = new JPopupMenu();   // unregistered, so it saves as no menu
+                c.putClientProperty("savedPopup", now);
+                surface.post(new DesignEvent.PropertyChanged(c, "popupMenu", old, now));
+            }
+        }
+    }
+
+    private static void add(DesignSurfacePanel surface, Random rnd) {
+        List<JComponent> panels = new ArrayList<>();
+        collect(surface, panels);
+        panels.removeIf(k -> !(k instanceof JPanel));
+        Container parent = panels.isEmpty() || rnd.nextBoolean() ? surface : panels.get(rnd.nextInt(panels.size()));
+        JComponent c = newComponent(rnd);
+        if (c instanceof JPanel && rnd.nextInt(3) == 0) attach(c, newComponent(rnd), 0);   // a subtree at once
+        attach(parent, c, rnd.nextInt(parent.getComponentCount() + 1));
+        surface.post(new DesignEvent.ComponentAdded(c, parent, parent.getComponentZOrder(c)));
+    }
+
+    /**
+     * Sizes and borders are fixed as a loaded design has them: a save writes the computed
+     * sizes and cannot write look-and-feel borders, so the live design would otherwise drift
+     * from its replay.
+     */
+    private static JComponent newComponent(Random rnd) {
+        JComponent c = switch (rnd.nextInt(4)) {
+            case 0 -> new JLabel("label");
+            case 1 -> new JButton("button");
+            default -> new JPanel(layout(rnd));
+        };
+        c.setName(rnd.nextInt(4) == 0 ? null : "n" + rnd.nextInt(1000));
+        c.setBounds(rnd.nextInt(300), rnd.nextInt(300), 20 + rnd.nextInt(100), 20);
+        c.setPreferredSize(new Dimension(20 + rnd.nextInt(100), 20));
+        c.setMinimumSize(new Dimension(10, 10));
+        c.setMaximumSize(new Dimension(500, 500));
+        c.setBorder(new LineBorder(Color.GRAY));
+        c.putClientProperty("positionType", PositionType.ABSOLUTE);
+        c.putClientProperty("layoutConstraint", new String[]{ "North", "South", "East", "West", "Center" }[rnd.nextInt(5)]);
+        return c;
+    }
+
+    private static LayoutManager layout(Random rnd) {
+        return switch (rnd.nextInt(4)) {
+            case 0 -> null;
+            case 1 -> new FlowLayout(rnd.nextInt(3));
+            case 2 -> new BorderLayout();
+            default -> new GridLayout(1 + rnd.nextInt(3), 0);
+        };
+    }
+
+    private static JPopupMenu menu(String name, Random rnd) {
+        JPopupMenu menu = new JPopupMenu();
+        for (int i = rnd.nextInt(3); i >= 0; i--) menu.add(new JMenuItem(name + " item " + i));
+        return menu;
+    }
+
+    private static void attach(Container parent, JComponent c, int index) {
+        if (parent.getLayout() instanceof BorderLayout) parent.add(c, c.getClientProperty("layoutConstraint"), index);
+        else parent.add(c, index);
+    }
+
+    private static void collect(Container cont, List<JComponent> out) {
+        for (Component c : cont.getComponents()) {
+            if (c instanceof JComponent jc) {
+                out.add(jc);
+                collect(jc, out);
+            }
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
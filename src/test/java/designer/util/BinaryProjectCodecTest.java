@@ -0,0 +1,279 @@
+package designer.util;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import designer.model.BorderData;
+import designer.model.GridBagData;
+import designer.model.LayoutData;
+import designer.model.MenuItemData;
+import designer.model.PopupMenuData;
+import designer.types.PositionType;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import javax.swing.border.*;
+import java.awt.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static designer.util.Static.mapper;
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The binary form must read back exactly what the JSON form of the same snapshot reads back. */
+class BinaryProjectCodecTest
+{
+    private static final String[] MENUS = { "fileMenu", "edit", "ctx" };
+
+    @Test
+    void randomProjectsReadTheSameFromBothFormats() throws IOException {
+        Random rnd = new Random(23);
+        try {
+            for (int round = 0; round < 300; round++) {
+                registerMenus(rnd);
+                JPanel root = new JPanel(null);
+                root.setName("panel");
+                fill(root, rnd, 0);
+                ProjectCodec.Snapshot s = ProjectCodec.snapshot(root, rnd.nextBoolean() ? "" : "int x = " + round + ";");
+
+                Recording json = read(write(s, false), false);
+                Recording binary = read(write(s, true), true);
+                assertEquals(json, binary, "round " + round);
+                assertEquals(s.size(), binary.nodes.size() / 2, "round " + round);
+            }
+        } finally {
+            PopupMenuManager.clearAll();
+        }
+    }
+
+    @Test
+    void longStringsAndNullFieldsSurvive() throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 70_000) text.append("é☃😀x");
+        JPanel root = new JPanel(null);
+        JLabel big = new JLabel(text.toString());
+        big.setName(text.toString());
+        root.add(big);
+        JLabel empty = new JLabel((String) null);
+        empty.setName(null);
+        empty.setFont(null);
+        empty.setBorder(null);
+        root.add(empty);
+        root.add(new JPanel(null));
+
+        ProjectCodec.Snapshot s = ProjectCodec.snapshot(root, text.toString());
+        Recording json = read(write(s, false), false);
+        Recording binary = read(write(s, true), true);
+        assertEquals(json, binary);
+        assertEquals(text.toString(), binary.userCode);
+        assertTrue(binary.nodes.get(1).contains(text), "long text kept");
+    }
+
+    @Test
+    void menusListedAfterTheTreeInJson() throws IOException {
+        Random rnd = new Random(7);
+        try {
+            registerMenus(rnd);
+            JPanel root = new JPanel(new FlowLayout());
+            fill(root, rnd, 0);
+            ProjectCodec.Snapshot s = ProjectCodec.snapshot(root, "code");
+
+            // as older versions wrote it: root first, menus last
+            ObjectNode written = (ObjectNode) mapper.readTree(write(s, false));
+            ObjectNode old = mapper.createObjectNode();
+            old.set("root", written.get("root"));
+            old.set("userCode", written.get("userCode"));
+            old.set("popupMenus", written.get("popupMenus"));
+
+            Recording legacy = read(mapper.writeValueAsBytes(old), false);
+            Recording binary = read(write(s, true), true);
+            assertEquals(binary, legacy);
+            assertTrue(legacy.events.indexOf("menus") > legacy.events.indexOf("nodes"), "menus read last");
+        } finally {
+            PopupMenuManager.clearAll();
+        }
+    }
+
+    /* ───── fixtures ───── */
+
+    private static void registerMenus(Random rnd) {
+        PopupMenuManager.clearAll();
+        for (String name : MENUS) {
+            if (rnd.nextInt(3) == 0) continue;
+            JPopupMenu menu = new JPopupMenu();
+            for (int i = rnd.nextInt(4); i > 0; i--) {
+                JMenuItem item = new JMenuItem(rnd.nextBoolean() ? null : name + " item " + i);
+                item.setActionCommand(rnd.nextBoolean() ? null : "cmd" + i);
+                menu.add(item);
+            }
+            PopupMenuManager.putMenu(name, menu);
+        }
+    }
+
+    private static void fill(Container parent, Random rnd, int depth) {
+        for (int i = rnd.nextInt(depth == 0 ? 8 : 4); i > 0; i--) {
+            JComponent c = newComponent(rnd, depth);
+            if (parent.getLayout() instanceof BorderLayout) {
+                String region = new String[]{ "North", "South", "East", "West", "Center" }[rnd.nextInt(5)];
+                c.putClientProperty("layoutConstraint", region);
+                parent.add(c, region);
+            } else {
+                parent.add(c);
+            }
+            if (parent.getLayout() instanceof GridBagLayout gbl) {
+                GridBagConstraints gbc = new GridBagConstraints(rnd.nextInt(4), rnd.nextInt(4), 1 + rnd.nextInt(2), 1,
+                        rnd.nextInt(3) * 0.5, rnd.nextDouble(), GridBagConstraints.CENTER, rnd.nextInt(4),
+                        new Insets(rnd.nextInt(10), rnd.nextInt(10), rnd.nextInt(10), rnd.nextInt(10)),
+                        rnd.nextInt(5), rnd.nextInt(5));
+                gbl.setConstraints(c, gbc);
+            }
+            if (c instanceof JPanel && depth < 4) fill(c, rnd, depth + 1);
+        }
+    }
+
+    private static JComponent newComponent(Random rnd, int depth) {
+        JComponent c = switch (rnd.nextInt(depth < 4 ? 6 : 4)) {
+            case 0 -> new JLabel(rnd.nextBoolean() ? null : "label " + rnd.nextInt(100));
+            case 1 -> new JButton("button");
+            case 2 -> new JCheckBox("check", rnd.nextBoolean());
+            case 3 -> new JTextField(rnd.nextBoolean() ? "" : "text");
+            case 4 -> new JPanel(layout(rnd));
+            default -> new JPanel(null);
+        };
+        c.setName(rnd.nextInt(4) == 0 ? null : "c" + rnd.nextInt(1000));
+        c.setBounds(rnd.nextInt(400) - 20, rnd.nextInt(400), rnd.nextInt(200), rnd.nextInt(80));
+        c.setVisible(rnd.nextInt(5) != 0);
+        c.setEnabled(rnd.nextInt(5) != 0);
+        if (rnd.nextBoolean()) c.setPreferredSize(new Dimension(rnd.nextInt(300), rnd.nextInt(300)));
+        if (rnd.nextBoolean()) c.setBackground(new Color(rnd.nextInt(), true));
+        if (rnd.nextBoolean()) c.setForeground(new Color(rnd.nextInt(0xFFFFFF)));
+        if (rnd.nextBoolean()) c.setFont(new Font(Font.MONOSPACED, rnd.nextInt(4), 8 + rnd.nextInt(20)));
+        if (rnd.nextBoolean()) c.setBorder(border(rnd, 0));
+        if (rnd.nextInt(3) == 0) {
+            c.putClientProperty("positionType", rnd.nextBoolean() ? PositionType.ABSOLUTE : PositionType.RELATIVE);
+        }
+        String menu = MENUS[rnd.nextInt(MENUS.length)];
+        if (rnd.nextInt(3) == 0 && PopupMenuManager.getMenu(menu) != null) {
+            c.putClientProperty("savedPopup", PopupMenuManager.getMenu(menu));
+        }
+        return c;
+    }
+
+    private static LayoutManager layout(Random rnd) {
+        return switch (rnd.nextInt(4)) {
+            case 0 -> new FlowLayout(rnd.nextInt(3), rnd.nextInt(10), rnd.nextInt(10));
+            case 1 -> new BorderLayout(rnd.nextInt(10), rnd.nextInt(10));
+            case 2 -> new GridLayout(1 + rnd.nextInt(3), rnd.nextInt(3), rnd.nextInt(5), rnd.nextInt(5));
+            default -> new GridBagLayout();
+        };
+    }
+
+    private static Border border(Random rnd, int depth) {
+        Color color = new Color(rnd.nextInt(0xFFFFFF));
+        return switch (rnd.nextInt(depth < 3 ? 7 : 5)) {
+            case 0 -> new EmptyBorder(rnd.nextInt(9), rnd.nextInt(9), rnd.nextInt(9), rnd.nextInt(9));
+            case 1 -> new LineBorder(color, 1 + rnd.nextInt(4));
+            case 2 -> new MatteBorder(1, 2, 3, 4, color);
+            case 3 -> new TitledBorder(new LineBorder(color), rnd.nextBoolean() ? "title" : null,
+                    TitledBorder.LEADING, TitledBorder.TOP, new Font(Font.SERIF, Font.BOLD, 12), color);
+            case 4 -> new EtchedBorder(rnd.nextInt(2), color, color.darker());
+            // nested compound borders, up to three deep
+            default -> new CompoundBorder(border(rnd, depth + 1), border(rnd, depth + 1));
+        };
+    }
+
+    /* ───── round trip ───── */
+
+    private static byte[] write(ProjectCodec.Snapshot s, boolean binary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProjectCodec.write(out, binary, s, written -> {});
+        return out.toByteArray();
+    }
+
+    private static Recording read(byte[] data, boolean binary) throws IOException {
+        Recording r = new Recording();
+        ProjectCodec.read(new ByteArrayInputStream(data), binary, r);
+        r.events.add("finish");
+        return r;
+    }
+
+    /** Everything a sink is told, as comparable strings; the order of menus and nodes is kept apart. */
+    private static final class Recording implements ProjectCodec.Sink {
+        final List<String> events = new ArrayList<>();
+        final List<String> nodes = new ArrayList<>();
+        String menus, userCode;
+
+        @Override public void popupMenus(List<PopupMenuData> m) {
+            events.add("menus");
+            StringBuilder sb = new StringBuilder();
+            for (PopupMenuData pm : m) {
+                sb.append(pm.name).append('[');
+                for (MenuItemData mi : pm.items) sb.append(mi.text).append('/').append(mi.actionCommand).append(';');
+                sb.append(']');
+            }
+            menus = sb.toString();
+        }
+
+        @Override public void userCode(String code) {
+            events.add("userCode");
+            userCode = code;
+        }
+
+        @Override public void open(ProjectCodec.NodeSpec n, int depth) {
+            if (nodes.isEmpty()) events.add("nodes");
+            nodes.add("open " + depth + " " + describe(n));
+        }
+
+        @Override public void close(ProjectCodec.NodeSpec n, int depth) {
+            nodes.add("close " + depth + " " + describe(n));
+        }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof Recording r && nodes.equals(r.nodes)
+                    && String.valueOf(menus).equals(String.valueOf(r.menus))
+                    && String.valueOf(userCode).equals(String.valueOf(r.userCode));
+        }
+
+        @Override public int hashCode() {
+            return nodes.hashCode();
+        }
+
+        @Override public String toString() {
+            return "menus=" + menus + "\nuserCode=" + userCode + "\n" + String.join("\n", nodes);
+        }
+    }
+
+    private static String describe(ProjectCodec.NodeSpec n) {
+        return String.join("|", n.className, n.name, n.text, String.valueOf(n.visible), String.valueOf(n.enabled),
+                String.valueOf(n.bounds), String.valueOf(n.preferredSize), String.valueOf(n.minimumSize),
+                String.valueOf(n.maximumSize), rgb(n.background), rgb(n.foreground), String.valueOf(n.font),
+                describe(n.border), describe(n.layout), n.layoutConstraint, n.positionType, n.popupMenuName,
+                describe(n.gridBag));
+    }
+
+    private static String rgb(Color c) {
+        return c == null ? "null" : Integer.toHexString(c.getRGB());
+    }
+
+    private static String describe(BorderData b) {
+        if (b == null) return "null";
+        Map<String, String> props = new TreeMap<>();
+        b.properties.forEach((k, v) -> props.put(k, v instanceof BorderData nested ? describe(nested) : String.valueOf(v)));
+        return b.type + props;
+    }
+
+    private static String describe(LayoutData l) {
+        if (l == null) return "null";
+        return l.type + "(" + l.hgap + "," + l.vgap + "," + l.alignment + "," + l.rows + "," + l.cols + ")";
+    }
+
+    private static String describe(GridBagData g) {
+        if (g == null) return "null";
+        return g.gridx + "," + g.gridy + "," + g.gridwidth + "," + g.gridheight + "," + g.weightx + "," + g.weighty
+                + "," + g.anchor + "," + g.fill + "," + g.ipadx + "," + g.ipady + "," + java.util.Arrays.toString(g.insets);
+    }
+}
@@ -0,0 +1,153 @@
+package designer.util;
+
+import designer.ui.DesignSurfacePanel;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import javax.swing.border.LineBorder;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Code served from the per-subtree caches must equal a generation from scratch. */
+class CodeManagerTest
+{
+    @Test
+    void cachedCodeMatchesAFullRegeneration() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                for (int seed = 0; seed < 20; seed++) {
+                    checkSession(new Random(seed));
+                }
+            } finally {
+                PopupMenuManager.clearAll();
+                CodeManager.invalidateAll();
+            }
+        });
+    }
+
+    private static void checkSession(Random rnd) {
+        PopupMenuManager.clearAll();
+        DesignSurfacePanel surface = new DesignSurfacePanel();
+        CodeManager.invalidateAll();
+        for (int i = 0; i < 15; i++) add(surface, rnd);
+
+        for (int step = 0; step < 200; step++) {
+            edit(surface, rnd);
+            String cached = CodeManager.generateCode(surface);
+            if (step % 10 == 9) {
+                // only every few steps, so that the caches also carry edits over several generations
+                CodeManager.invalidateAll();
+                assertEquals(CodeManager.generateCode(surface), cached, "step " + step);
+            }
+        }
+    }
+
+    /* ───── random edits, each followed by the markDirty the designer makes ───── */
+
+    private static void edit(DesignSurfacePanel surface, Random rnd) {
+        List<JComponent> all = new ArrayList<>();
+        collect(surface, all);
+        if (all.isEmpty() || rnd.nextInt(6) == 0) {
+            add(surface, rnd);
+            return;
+        }
+        JComponent c = all.get(rnd.nextInt(all.size()));
+        Container parent = c.getParent();
+        switch (rnd.nextInt(10)) {
+            case 0 -> {
+                parent.remove(c);
+                CodeManager.markDirty(parent);
+            }
+            case 1 -> {
+                List<Container> targets = new ArrayList<>(List.of(surface));
+                for (JComponent k : all) {
+                    if (k instanceof JPanel && k != c && !SwingUtilities.isDescendingFrom(k, c)) targets.add(k);
+                }
+                Container to = targets.get(rnd.nextInt(targets.size()));
+                parent.remove(c);
+                to.add(c, rnd.nextInt(to.getComponentCount() + 1));
+                CodeManager.markDirty(parent);
+                CodeManager.markDirty(to);
+            }
+            case 2 -> {
+                parent.setComponentZOrder(c, rnd.nextInt(parent.getComponentCount()));
+                CodeManager.markDirty(parent);
+            }
+            case 3 -> {
+                c.setBounds(rnd.nextInt(300), rnd.nextInt(300), 1 + rnd.nextInt(100), 1 + rnd.nextInt(40));
+                CodeManager.markDirty(c);
+            }
+            case 4 -> {
+                c.setBackground(new Color(rnd.nextInt(0xFFFFFF)));
+                CodeManager.markDirty(c);
+            }
+            case 5 -> {
+                if (c instanceof JLabel l) l.setText("text " + rnd.nextInt(100));
+                else if (c instanceof AbstractButton b) b.setText("button " + rnd.nextInt(100));
+                else c.setBorder(rnd.nextBoolean() ? null : new LineBorder(new Color(rnd.nextInt(0xFFFFFF)), 1 + rnd.nextInt(3)));
+                CodeManager.markDirty(c);
+            }
+            case 6 -> {
+                // unnamed components get numbered variables, which shifts the numbers after them
+                c.setName(rnd.nextBoolean() ? null : "c" + rnd.nextInt(1000));
+                CodeManager.markDirty(c);
+            }
+            case 7 -> {
+                if (c instanceof JPanel) {
+                    c.setLayout(switch (rnd.nextInt(3)) {
+                        case 0 -> null;
+                        case 1 -> new FlowLayout(rnd.nextInt(3));
+                        default -> new GridLayout(1 + rnd.nextInt(3), 0);
+                    });
+                }
+                CodeManager.markDirty(c);
+            }
+            case 8 -> {
+                c.setFont(new Font(Font.DIALOG, rnd.nextInt(4), 8 + rnd.nextInt(16)));
+                c.setEnabled(rnd.nextBoolean());
+                CodeManager.markDirty(c);
+            }
+            default -> {
+                // a new or re-filled popup menu changes the registry, not the component
+                JPopupMenu menu = new JPopupMenu();
+                menu.add(new JMenuItem("item " + rnd.nextInt(10)));
+                PopupMenuManager.putMenu("menu" + rnd.nextInt(3), menu);
+                if (rnd.nextBoolean()) {
+                    c.putClientProperty("savedPopup", menu);
+                    CodeManager.markDirty(c);
+                }
+            }
+        }
+    }
+
+    private static void add(DesignSurfacePanel surface, Random rnd) {
+        List<JComponent> panels = new ArrayList<>();
+        collect(surface, panels);
+        panels.removeIf(k -> !(k instanceof JPanel));
+        Container parent = panels.isEmpty() || rnd.nextBoolean() ? surface : panels.get(rnd.nextInt(panels.size()));
+        JComponent c = switch (rnd.nextInt(5)) {
+            case 0 -> new JLabel("label");
+            case 1 -> new JButton("button");
+            case 2 -> new JCheckBox("check");
+            case 3 -> new JTextField("field");
+            default -> new JPanel(null);
+        };
+        c.setName(rnd.nextInt(3) == 0 ? null : "n" + rnd.nextInt(1000));
+        c.setBounds(rnd.nextInt(300), rnd.nextInt(300), 20 + rnd.nextInt(100), 20);
+        parent.add(c, rnd.nextInt(parent.getComponentCount() + 1));
+        CodeManager.markDirty(parent);
+    }
+
+    private static void collect(Container cont, List<JComponent> out) {
+        for (Component c : cont.getComponents()) {
+            if (c instanceof JComponent jc) {
+                out.add(jc);
+                collect(jc, out);
+            }
+        }
+    }
+}
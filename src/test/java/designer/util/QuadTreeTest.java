@@ -0,0 +1,74 @@
+package designer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuadTreeTest
+{
+    @Test
+    void queriesMatchABruteForceScan() {
+        Random rnd = new Random(1);
+        QuadTree<Integer> tree = new QuadTree<>();
+        Rectangle[] all = new Rectangle[500];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = new Rectangle(rnd.nextInt(4000) - 1000, rnd.nextInt(4000) - 1000, rnd.nextInt(300), rnd.nextInt(300));
+            tree.put(i, all[i]);
+        }
+        for (int i = 0; i < 200; i++) {   // moves, some of them out of the current root
+            int k = rnd.nextInt(all.length);
+            all[k] = new Rectangle(rnd.nextInt(9000) - 3000, rnd.nextInt(9000) - 3000, rnd.nextInt(300), rnd.nextInt(300));
+            tree.put(k, all[k]);
+        }
+        for (int i = 0; i < 300; i++) {
+            Point p = new Point(rnd.nextInt(9000) - 3000, rnd.nextInt(9000) - 3000);
+            Rectangle r = new Rectangle(p.x, p.y, rnd.nextInt(500), rnd.nextInt(500));
+            Set<Integer> atPoint = new HashSet<>(), inRect = new HashSet<>();
+            for (int k = 0; k < all.length; k++) {
+                if (all[k].contains(p)) atPoint.add(k);
+                if (all[k].intersects(r)) inRect.add(k);
+            }
+            assertEquals(atPoint, new HashSet<>(tree.query(p)));
+            assertEquals(inRect, new HashSet<>(tree.query(r)));
+        }
+    }
+
+    @Test
+    void zeroSizeItemsAreIndexedWithoutRebuildingTheTree() {
+        QuadTree<Integer> tree = new QuadTree<>();
+        // not laid out yet: 0x0 and 0xN at spots all over a large form
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            for (int i = 0; i < 20_000; i++) {
+                tree.put(i, new Rectangle((i % 200) * 10, (i / 200) * 10, 0, i % 3 == 0 ? 20 : 0));
+            }
+            for (int i = 0; i < 20_000; i++) {
+                tree.put(i, new Rectangle((i % 200) * 10 + 1, (i / 200) * 10 + 1, 0, 0));
+            }
+        });
+        assertEquals(20_000, tree.size());
+        assertEquals(new Rectangle(11, 1, 0, 0), tree.boundsOf(1));
+    }
+
+    @Test
+    void zeroSizeItemsGainTheirBoundsLater() {
+        QuadTree<String> tree = new QuadTree<>();
+        tree.put("a", new Rectangle(40, 40, 0, 0));
+        tree.put("b", new Rectangle(5000, 5000, 0, 0));
+        assertTrue(tree.query(new Point(40, 40)).isEmpty());
+
+        tree.put("a", new Rectangle(30, 30, 20, 20));
+        tree.put("b", new Rectangle(30, 30, 5, 5));
+        assertEquals(Set.of("a", "b"), new HashSet<>(tree.query(new Point(32, 32))));
+        assertEquals(List.of("a"), tree.query(new Point(45, 45)));
+
+        tree.remove("a");
+        assertEquals(List.of("b"), tree.query(new Rectangle(0, 0, 100, 100)));
+    }
+}